@@ -5,11 +5,13 @@ require_relative 'lib/hasup/configuration_pb'
 require_relative 'lib/hasup/message_pb'
 
 class AdminClient
-  SERVERS = {
-    1 => { host: 'localhost', port: 7001 },
-    2 => { host: 'localhost', port: 7002 },
-    3 => { host: 'localhost', port: 7003 }
-  }
+  # Düğüm N'nin admin portu 7000+N (sunuculardaki varsayılan küme üyeliği)
+  ADMIN_PORT_BASE = 7000
+  # Kapasite aboneliği: değişiklik olmasa da gönderim aralığı ve iki gönderim arası en kısa süre
+  CAPACITY_INTERVAL_MS = 5000
+  CAPACITY_MIN_INTERVAL_MS = 200
+  # Abonelikten sonra ilk güncelleme bu süre içinde gelmezse periyodik sorguya dönülür
+  CAPACITY_SUBSCRIBE_TIMEOUT_S = 2
 
   def initialize
     @sockets = {}
@@ -18,8 +20,14 @@ class AdminClient
 
   def read_config
     begin
-      @fault_tolerance = File.read('dist_subs.conf').match(/fault_tolerance_level\s*=\s*(\d+)/)[1].to_i
+      conf = File.read('dist_subs.conf')
+      @fault_tolerance = conf.match(/fault_tolerance_level\s*=\s*(\d+)/)[1].to_i
       puts "Hata tolerans seviyesi: #{@fault_tolerance}".encode('utf-8')
+      # İsteğe bağlı, verilmezse 3 düğüm
+      cluster_size = conf.match(/cluster_size\s*=\s*(\d+)/)
+      @servers = (1..(cluster_size ? cluster_size[1].to_i : 3)).map do |id|
+        [id, { host: 'localhost', port: ADMIN_PORT_BASE + id }]
+      end.to_h
     rescue => e
       puts "Konfigürasyon dosyası okunamadı: #{e.message}".encode('utf-8')
       exit 1
@@ -67,7 +75,7 @@ class AdminClient
 
   # Sunucuya bağlan
   def connect_to_server(server_id)
-    server = SERVERS[server_id]
+    server = @servers[server_id]
     return nil unless server
 
     begin
@@ -151,7 +159,7 @@ class AdminClient
     active_servers = {}
     
     # Önce tüm sunuculara bağlan ve başlat
-    (1..3).each do |server_id|
+    @servers.each_key do |server_id|
       puts "\nServer #{server_id} bağlantı denemesi:".encode('utf-8')
       if connect_to_server(server_id)
         if send_start_command(server_id)
@@ -166,20 +174,100 @@ class AdminClient
 
     puts "\nAktif sunucular izlenmeye başlanıyor...".encode('utf-8')
     
-    # Aktif sunucuları periyodik olarak sorgula
-    while !active_servers.empty?
-      active_servers.keys.each do |server_id|
+    # Sorgulamak yerine kapasiteye abone ol; sunucular değişiklikleri kendileri gönderir.
+    # Mesaj tipi 5'i desteklemeyen sunucular periyodik CPCTY sorgusuyla izlenir.
+    streaming = {}
+    polling = {}
+    active_servers.keys.each do |server_id|
+      if subscribe_capacity(server_id)
+        streaming[server_id] = true
+      elsif reconnect(server_id)
+        polling[server_id] = true
+      end
+    end
+
+    next_poll = Time.now
+    while !(streaming.empty? && polling.empty?)
+      timeout = polling.empty? ? nil : [next_poll - Time.now, 0].max
+      readable, = IO.select(streaming.keys.map { |server_id| @sockets[server_id] }, nil, nil, timeout)
+      (readable || []).each do |socket|
+        server_id = @sockets.key(socket)
         begin
-          query_server_capacity(server_id)
+          receive_capacity(server_id)
         rescue => e
-          puts "Server #{server_id} kapasitesi sorgulanamadı: #{e.message}".encode('utf-8')
-          active_servers.delete(server_id)
+          puts "Server #{server_id} kapasite akışı kesildi: #{e.message}".encode('utf-8')
+          streaming.delete(server_id)
         end
       end
-      sleep(5)  # 5 saniye bekle
+
+      if !polling.empty? && Time.now >= next_poll
+        polling.keys.each do |server_id|
+          polling.delete(server_id) unless query_server_capacity(server_id)
+        end
+        next_poll = Time.now + CAPACITY_INTERVAL_MS / 1000.0
+      end
     end
   end
 
+  # Bağlantıyı kapatıp yeniden aç (yanıtlanmamış bir isteğin yanıtı sonradan gelip sorguya karışmasın)
+  def reconnect(server_id)
+    socket = @sockets.delete(server_id)
+    socket.close if socket && !socket.closed?
+    connect_to_server(server_id)
+  end
+
+  # Kapasite aboneliği başlat (mesaj tipi 5)
+  def subscribe_capacity(server_id)
+    socket = @sockets[server_id]
+    return false unless socket
+
+    begin
+      request = Hasup::CapacitySubscription.new(
+        server_id: server_id,
+        interval_ms: CAPACITY_INTERVAL_MS,
+        min_interval_ms: CAPACITY_MIN_INTERVAL_MS
+      )
+
+      socket.write([5].pack('C'))
+      data = request.to_proto
+      socket.write([data.bytesize].pack('N'))
+      socket.write(data)
+      socket.flush
+
+      # Mesaj tipi 5'i tanımayan sunucular isteği yok sayar; ilk güncelleme hemen gönderilir
+      unless IO.select([socket], nil, nil, CAPACITY_SUBSCRIBE_TIMEOUT_S)
+        puts "Server #{server_id} kapasite aboneliğini desteklemiyor, periyodik sorguya geçiliyor".encode('utf-8')
+        return false
+      end
+      receive_capacity(server_id)
+
+      puts "Server #{server_id} kapasite aboneliği başlatıldı".encode('utf-8')
+      true
+    rescue => e
+      puts "Server #{server_id} kapasite aboneliği başlatılamadı: #{e.message}".encode('utf-8')
+      false
+    end
+  end
+
+  # Sunucunun gönderdiği bir kapasite güncellemesini oku
+  def receive_capacity(server_id)
+    socket = @sockets[server_id]
+
+    response_size_data = socket.read(4)
+    if response_size_data.nil? || response_size_data.bytesize < 4
+      raise "Sunucu bağlantıyı kapattı"
+    end
+    response_size = response_size_data.unpack('N')[0]
+    capacity = Hasup::Capacity.decode(socket.read(response_size) || '')
+
+    send_to_plotter(capacity)
+
+    # Sunucu zamanı milisaniye cinsinden gönderir
+    puts "Server #{server_id} kapasitesi: #{capacity.server_status} (#{Time.at(capacity.timestamp / 1000.0)})".encode('utf-8')
+    capacity
+  end
+
+  # Kapasite aboneliğini desteklemeyen sunucular için tek seferlik sorgu (mesaj tipi 3)
   def query_server_capacity(server_id)
     socket = @sockets[server_id]
     return unless socket
@@ -217,7 +305,7 @@ class AdminClient
       # Ekrana yazdır
       puts "Server #{server_id} kapasitesi:".encode('utf-8')
       puts "  Doluluk: #{capacity.server_status}".encode('utf-8')
-      puts "  Zaman: #{Time.at(capacity.timestamp)}".encode('utf-8')
+      puts "  Zaman: #{Time.at(capacity.timestamp / 1000.0)}".encode('utf-8')
       
       true
     rescue => e
@@ -0,0 +1,89 @@
+package dist_servers;
+
+import com.google.protobuf.MessageLite;
+import com.hasup.proto.CapacityProto.Capacity;
+import com.hasup.proto.ConfigurationProto.Configuration;
+import com.hasup.proto.MessageProto.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AdminHandler'ın admin portundan gelen bir isteği çözme yolu:
+ * [byte mesaj tipi][int uzunluk][protobuf yük] çerçevesini okuyup tipe göre
+ * Capacity (1), Configuration (2) ya da Message (3) olarak ayrıştırma.
+ * Soket ve log maliyeti dahil değildir.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdminRequestBenchmark {
+    private byte[] capacityRequest;
+    private byte[] configurationRequest;
+    private byte[] capacityQuery;
+
+    @Setup
+    public void setUp() throws IOException {
+        capacityRequest = frame(1, Capacity.newBuilder()
+            .setServerId(1)
+            .setTimestamp(System.currentTimeMillis())
+            .build());
+        configurationRequest = frame(2, Configuration.newBuilder()
+            .setServerId(1)
+            .setFaultToleranceLevel(1)
+            .setMethod("STRT")
+            .build());
+        capacityQuery = frame(3, Message.newBuilder()
+            .setDemand("CPCTY")
+            .setTimestamp(System.currentTimeMillis())
+            .build());
+    }
+
+    // admin.rb'nin gönderdiği biçim
+    private static byte[] frame(int messageType, MessageLite message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] payload = message.toByteArray();
+        out.write(messageType);
+        out.writeInt(payload.length);
+        out.write(payload);
+        return bytes.toByteArray();
+    }
+
+    private static MessageLite decode(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        int messageType = in.read();
+        byte[] messageBytes = new byte[in.readInt()];
+        in.readFully(messageBytes);
+        switch (messageType) {
+            case 1:
+                return Capacity.parseFrom(messageBytes);
+            case 2:
+                return Configuration.parseFrom(messageBytes);
+            case 3:
+                return Message.parseFrom(messageBytes);
+            default:
+                throw new IOException("Bilinmeyen mesaj tipi: " + messageType);
+        }
+    }
+
+    @Benchmark
+    public MessageLite capacityRequest() throws IOException {
+        return decode(capacityRequest);
+    }
+
+    @Benchmark
+    public MessageLite configurationRequest() throws IOException {
+        return decode(configurationRequest);
+    }
+
+    @Benchmark
+    public MessageLite capacityQuery() throws IOException {
+        return decode(capacityQuery);
+    }
+}
@@ -0,0 +1,37 @@
+package dist_servers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarkların geçici veri dizinleri
+ */
+final class BenchmarkFiles {
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Yeni bir geçici dizin oluşturur ve sunucuların veri kökü yapar
+     */
+    static Path useTempDataDir(String prefix) {
+        try {
+            Path dir = Files.createTempDirectory(prefix);
+            System.setProperty(ServerPaths.DATA_DIR_PROPERTY, dir.toString());
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
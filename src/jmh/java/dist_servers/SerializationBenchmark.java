@@ -0,0 +1,101 @@
+package dist_servers;
+
+import com.google.protobuf.MessageLite;
+import com.hasup.proto.CapacityProto.Capacity;
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscriber ve Capacity mesajlarının protobuf kodlama/çözme maliyeti:
+ * client ve admin protokollerinin kullandığı toByteArray + uzunluk öneki ile
+ * protobuf'un writeDelimitedTo/parseDelimitedFrom karşılaştırması.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+    private Subscriber subscriber;
+    private Capacity capacity;
+    private byte[] subscriberBytes;
+    private byte[] capacityBytes;
+    private byte[] subscriberDelimited;
+    private byte[] capacityDelimited;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+
+    @Setup
+    public void setUp() throws IOException {
+        long now = System.currentTimeMillis();
+        subscriber = Subscriber.newBuilder()
+            .setId(123_456)
+            .setNameSurname("Gökdeniz Çoban")
+            .setStartDate(now - 86_400_000L)
+            .setLastAccessed(now)
+            .setStatus(Status.ONLN)
+            .build();
+        capacity = Capacity.newBuilder()
+            .setServerId(1)
+            .setServerStatus(1_000_000)
+            .setTimestamp(now)
+            .build();
+        subscriberBytes = subscriber.toByteArray();
+        capacityBytes = capacity.toByteArray();
+        subscriberDelimited = delimited(subscriber);
+        capacityDelimited = delimited(capacity);
+    }
+
+    private static byte[] delimited(MessageLite message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeDelimitedTo(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] subscriberToByteArray() {
+        return subscriber.toByteArray();
+    }
+
+    @Benchmark
+    public int subscriberWriteDelimitedTo() throws IOException {
+        buffer.reset();
+        subscriber.writeDelimitedTo(buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public Subscriber subscriberParseFrom() throws IOException {
+        return Subscriber.parseFrom(subscriberBytes);
+    }
+
+    @Benchmark
+    public Subscriber subscriberParseDelimitedFrom() throws IOException {
+        return Subscriber.parseDelimitedFrom(new ByteArrayInputStream(subscriberDelimited));
+    }
+
+    @Benchmark
+    public byte[] capacityToByteArray() {
+        return capacity.toByteArray();
+    }
+
+    @Benchmark
+    public int capacityWriteDelimitedTo() throws IOException {
+        buffer.reset();
+        capacity.writeDelimitedTo(buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public Capacity capacityParseFrom() throws IOException {
+        return Capacity.parseFrom(capacityBytes);
+    }
+
+    @Benchmark
+    public Capacity capacityParseDelimitedFrom() throws IOException {
+        return Capacity.parseDelimitedFrom(new ByteArrayInputStream(capacityDelimited));
+    }
+}
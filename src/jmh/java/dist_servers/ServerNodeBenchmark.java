@@ -0,0 +1,71 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServerNode.addSubscriber'ın eşzamanlı istemciler altında uçtan uca maliyeti:
+ * şerit kilidi, depo güncellemesi ve WAL yazımı (replikasyon kapalı).
+ * Sunucu her güncellemede log satırı bastığı için standart çıktı ölçüm
+ * süresince susturulur.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class ServerNodeBenchmark {
+    @Param({"10000"})
+    public int subscribers;
+
+    private ServerNode server;
+    private Path dataDir;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataDir = BenchmarkFiles.useTempDataDir("jmh-server");
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        server = new ServerNode(1, ClusterMembership.localhost(1));
+        List<Subscriber> batch = new ArrayList<>(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            batch.add(Subscriber.newBuilder()
+                .setId(server.nextSubscriberId())
+                .setNameSurname("Abone " + i)
+                .setStartDate(System.currentTimeMillis())
+                .setStatus(Status.SUBS)
+                .build());
+        }
+        server.addSubscribers(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+        System.setOut(stdout);
+        BenchmarkFiles.delete(dataDir);
+    }
+
+    @Benchmark
+    public WriteResult addSubscriberUpdate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return server.addSubscriber(Subscriber.newBuilder()
+            .setId(random.nextInt(subscribers) + 1)
+            .setStatus(random.nextBoolean() ? Status.ONLN : Status.OFFL)
+            .build());
+    }
+
+    @Benchmark
+    public int getActiveSubscriberCount() {
+        return server.getActiveSubscriberCount();
+    }
+}
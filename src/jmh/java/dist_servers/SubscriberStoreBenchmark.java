@@ -0,0 +1,81 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abone deposu uygulamalarının eşzamanlı yazma altında durum güncellemesi
+ * ve aktif abone sayımı. Depo SubscriberStore.create ile, sunucudaki gibi
+ * CountingSubscriberStore ile sarılmış olarak oluşturulur.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class SubscriberStoreBenchmark {
+    @Param({"map", "int", "mmap"})
+    public String store;
+
+    @Param({"100000"})
+    public int subscribers;
+
+    private SubscriberStore target;
+    private Subscriber[] online;
+    private Subscriber[] offline;
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataDir = BenchmarkFiles.useTempDataDir("jmh-store");
+        System.setProperty(SubscriberStore.STORE_PROPERTY, store);
+        target = SubscriberStore.create(1);
+        online = new Subscriber[subscribers];
+        offline = new Subscriber[subscribers];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < subscribers; i++) {
+            Subscriber subscriber = Subscriber.newBuilder()
+                .setId(i + 1)
+                .setNameSurname("Abone " + (i + 1))
+                .setStartDate(now)
+                .setLastAccessed(now)
+                .setStatus(Status.OFFL)
+                .build();
+            offline[i] = subscriber;
+            online[i] = subscriber.toBuilder().setStatus(Status.ONLN).build();
+            target.put(subscriber);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.delete(dataDir);
+    }
+
+    /**
+     * Rastgele abonenin durumunu değiştirir (sunucudaki güncelleme yolu)
+     */
+    @Benchmark
+    public Status updateStatus() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(subscribers);
+        return target.put(random.nextBoolean() ? online[index] : offline[index]);
+    }
+
+    @Benchmark
+    public Subscriber get() {
+        return target.get(ThreadLocalRandom.current().nextInt(subscribers) + 1);
+    }
+
+    /**
+     * getActiveSubscriberCount'un kullandığı sayım
+     */
+    @Benchmark
+    public int countActive() {
+        return target.countByStatus(Status.ONLN);
+    }
+}
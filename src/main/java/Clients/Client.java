@@ -3,28 +3,47 @@ package Clients;
 import com.hasup.proto.SubscriberProto.Subscriber;
 import com.hasup.proto.SubscriberProto.Status;
 import com.hasup.proto.MessageProto.Message;
+import com.hasup.proto.SubscriberBatchProto.SubscriberBatch;
+import com.google.protobuf.InvalidProtocolBufferException;
+import dist_servers.ClientHandler;
+import dist_servers.ClusterMembership;
 
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Client {
     private static final Map<Integer, ServerInfo> SERVERS = new HashMap<>();
     static {
-        SERVERS.put(1, new ServerInfo("localhost", 6001));
-        SERVERS.put(2, new ServerInfo("localhost", 6002));
-        SERVERS.put(3, new ServerInfo("localhost", 6003));
+        // Sunucularla aynı küme üyeliği (-Dcluster.members / -Dcluster.size)
+        for (ClusterMembership.Member member : ClusterMembership.fromSystemProperties().getMembers()) {
+            SERVERS.put(member.getId(), new ServerInfo(member.getHost(), member.getClientPort()));
+        }
     }
     
+    // Yanıtı beklenen en fazla istek sayısı (boru hattı derinliği)
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    
     private final String clientId;
+    private final int maxInFlight;
     private Socket currentSocket;
     private int currentServerId;
     private InputStream input;
-    private OutputStream output;
-    private boolean connected;
+    private DataOutputStream output;
+    private volatile boolean connected;
+    
+    // Yanıtlar istek sırasıyla geldiği için bekleyen istekler FIFO kuyrukta tutulur
+    private Queue<CompletableFuture<byte[]>> pending;
+    private Semaphore inFlight;
     
     public Client(String clientId) {
+        this(clientId, DEFAULT_MAX_IN_FLIGHT);
+    }
+    
+    public Client(String clientId, int maxInFlight) {
         this.clientId = clientId;
+        this.maxInFlight = maxInFlight;
     }
     
     // Sunucuya bağlan
@@ -38,10 +57,14 @@ public class Client {
             }
             
             currentSocket = new Socket(server.host, server.port);
-            input = currentSocket.getInputStream();
-            output = currentSocket.getOutputStream();
+            currentSocket.setTcpNoDelay(true);
+            input = new BufferedInputStream(currentSocket.getInputStream());
+            output = new DataOutputStream(new BufferedOutputStream(currentSocket.getOutputStream()));
             currentServerId = serverId;
+            pending = new ConcurrentLinkedQueue<>();
+            inFlight = new Semaphore(maxInFlight);
             this.connected = true;
+            startReader(currentSocket, input, pending, inFlight);
             
             System.out.println("Sunucu " + serverId + "'e bağlanıldı");
             return true;
@@ -65,41 +88,166 @@ public class Client {
         return false;
     }
     
-    // Abone ol
+    // Abone ol (ya da mevcut abonenin durumunu güncelle) ve yanıtı bekle
     public Subscriber subscribe(Subscriber subscriber) throws IOException {
         if (!connected || currentSocket == null) {
             return null;
         }
         
         try {
-            // Subscriber nesnesini gönder
-            byte[] data = subscriber.toByteArray();
-            DataOutputStream out = new DataOutputStream(currentSocket.getOutputStream());
-            out.writeInt(data.length);
-            out.write(data);
-            out.flush();
-            
-            System.out.println("İstek gönderildi: " + subscriber.getNameSurname());
-            
-            // Yanıtı bekle
-            DataInputStream in = new DataInputStream(currentSocket.getInputStream());
-            int responseLength = in.readInt();
-            if (responseLength > 0) {
-                byte[] responseData = new byte[responseLength];
-                in.readFully(responseData);
-                
-                // Yanıtı parse et
-                Subscriber response = Subscriber.parseFrom(responseData);
+            Subscriber response = subscribeAsync(subscriber).get();
+            if (response != null) {
                 System.out.println("Yanıt alındı: ID=" + response.getId());
-                return response;
             } else {
                 System.out.println("Boş yanıt alındı");
-                return null;
             }
-        } catch (IOException e) {
-            System.err.println("Abone işlemi sırasında hata: " + e.getMessage());
-            throw e;
+            return response;
+        } catch (ExecutionException e) {
+            System.err.println("Abone işlemi sırasında hata: " + e.getCause().getMessage());
+            throw e.getCause() instanceof IOException
+                ? (IOException) e.getCause()
+                : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Yanıt beklenirken kesildi");
+        }
+    }
+    
+    /**
+     * İsteği yanıtını beklemeden gönderir. Aynı bağlantı üzerinden birden
+     * fazla istek boru hattına alınabilir; yanıtlar gönderim sırasıyla
+     * eşleştirilir. Bekleyen istek sayısı maxInFlight'a ulaşınca çağıran bloklanır.
+     */
+    public CompletableFuture<Subscriber> subscribeAsync(Subscriber subscriber) throws IOException {
+        return subscribeAll(Collections.singletonList(subscriber)).get(0);
+    }
+    
+    /**
+     * İstekleri tek bir flush ile gönderir ve her biri için yanıt future'ı döndürür
+     */
+    public List<CompletableFuture<Subscriber>> subscribeAll(List<Subscriber> subscribers) throws IOException {
+        List<CompletableFuture<Subscriber>> futures = new ArrayList<>(subscribers.size());
+        synchronized (output) {
+            for (Subscriber subscriber : subscribers) {
+                futures.add(writeFrame(0, subscriber.toByteArray()).thenApply(Client::parseSubscriber));
+            }
+            output.flush();
+        }
+        return futures;
+    }
+    
+    /**
+     * Aboneleri tek bir SubscriberBatch çerçevesiyle gönderir. Sunucu tüm listeyi
+     * tek geçişte uygular; yanıtta her eleman aynı sırayla döner, başarısız
+     * olanların status'u UNKNOWN, uygulanıp onaylanamayanların PEND olur.
+     */
+    public CompletableFuture<List<Subscriber>> subscribeBatch(List<Subscriber> subscribers) throws IOException {
+        byte[] data = SubscriberBatch.newBuilder()
+            .addAllSubscribers(subscribers)
+            .build()
+            .toByteArray();
+        CompletableFuture<byte[]> response;
+        synchronized (output) {
+            response = writeFrame(ClientHandler.BATCH_FRAME, data);
+            output.flush();
         }
+        return response.thenApply(Client::parseBatch);
+    }
+    
+    // output kilidi tutulurken çağrılır; çerçeveyi yazar ve yanıt future'ını kuyruğa ekler
+    private CompletableFuture<byte[]> writeFrame(int flags, byte[] data) throws IOException {
+        if (!connected || currentSocket == null) {
+            throw new IOException("Sunucuya bağlı değil");
+        }
+        try {
+            if (!inFlight.tryAcquire()) {
+                // Tamponda bekleyen çerçeveler gönderilmezse yanıtları gelmez ve yer hiç açılmaz
+                output.flush();
+                inFlight.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("İstek gönderimi kesildi");
+        }
+        
+        // Future, yanıtı okuyan thread'in göreceği sırada kuyruğa girmeli. Okuyucu
+        // kapanırken kuyruğu aynı kilitle boşaltır; kapandıktan sonra eklenen
+        // future hiç tamamlanmayacağından istek gönderilmez.
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        synchronized (pending) {
+            if (!connected) {
+                inFlight.release();
+                throw new IOException("Sunucuya bağlı değil");
+            }
+            pending.add(future);
+        }
+        output.writeInt(flags | data.length);
+        output.write(data);
+        return future;
+    }
+    
+    private static Subscriber parseSubscriber(byte[] data) {
+        try {
+            return data != null ? Subscriber.parseFrom(data) : null;
+        } catch (InvalidProtocolBufferException e) {
+            throw new CompletionException(e);
+        }
+    }
+    
+    private static List<Subscriber> parseBatch(byte[] data) {
+        try {
+            return data != null ? SubscriberBatch.parseFrom(data).getSubscribersList() : Collections.emptyList();
+        } catch (InvalidProtocolBufferException e) {
+            throw new CompletionException(e);
+        }
+    }
+    
+    // Yanıtları okuyup bekleyen isteklerle sırasıyla eşleştiren thread
+    private void startReader(Socket socket, InputStream input,
+                             Queue<CompletableFuture<byte[]>> pending, Semaphore inFlight) {
+        Thread reader = new Thread(() -> {
+            DataInputStream in = new DataInputStream(input);
+            IOException failure = null;
+            try {
+                while (!socket.isClosed()) {
+                    // Batch biti yanıtın türünü belirtir; yükü future'ı bekleyen taraf çözer
+                    int responseLength = in.readInt() & ~ClientHandler.BATCH_FRAME;
+                    byte[] response = null;
+                    if (responseLength > 0) {
+                        response = new byte[responseLength];
+                        in.readFully(response);
+                    }
+                    
+                    CompletableFuture<byte[]> future = pending.poll();
+                    inFlight.release();
+                    if (future != null) {
+                        future.complete(response);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                IOException cause = failure != null ? failure : new EOFException("Bağlantı kapandı");
+                List<CompletableFuture<byte[]>> abandoned = new ArrayList<>();
+                synchronized (pending) {
+                    if (socket == currentSocket) {
+                        this.connected = false;
+                    }
+                    CompletableFuture<byte[]> future;
+                    while ((future = pending.poll()) != null) {
+                        abandoned.add(future);
+                    }
+                }
+                // Her bekleyen istek bir izin tutar; yer bekleyen gönderici uyanır ve
+                // bağlantının kapandığını görür
+                inFlight.release(abandoned.size());
+                for (CompletableFuture<byte[]> future : abandoned) {
+                    future.completeExceptionally(cause);
+                }
+            }
+        }, "Client-" + clientId + "-reader");
+        reader.setDaemon(true);
+        reader.start();
     }
     
     // Bağlantıyı kapat
@@ -135,7 +283,11 @@ public class Client {
                 .setNameSurname("Test User")
                 .setLastAccessed(System.currentTimeMillis())
                 .build();
-            client.subscribe(subscriber);
+            try {
+                client.subscribe(subscriber);
+            } catch (IOException e) {
+                System.err.println("Abone olunamadı: " + e.getMessage());
+            }
         }
         
         client.close();
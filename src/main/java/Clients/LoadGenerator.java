@@ -0,0 +1,307 @@
+package Clients;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import dist_servers.ClusterMembership;
+import dist_servers.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Kümeye yük bindirip gecikme ve throughput raporlayan yük üreticisi.
+ *
+ * Bağlantılar küme üyeliğindeki düğümlere sırayla dağıtılır. İstekler
+ * "-Dload.subscribe.ratio" oranında yeni abonelik (SUBS), kalanı hazırlık
+ * aşamasında oluşturulan abonelere rastgele ONLN/OFFL güncellemesidir.
+ *
+ * İki çalışma biçimi vardır ("-Dload.mode"):
+ * open   (varsayılan) İstekler, yanıtları beklenmeden sabit bir hızla
+ *        ("-Dload.rate" istek/sn, tüm bağlantılar toplamı) gönderilir.
+ *        Gecikme, isteğin planlanan gönderim anından ölçülür; sunucu
+ *        yavaşladığında biriken istekler de böylece gecikmeye yansır.
+ * closed Her bağlantıda "-Dload.concurrency" sanal kullanıcı, yanıtı alınca
+ *        bir sonraki isteği gönderir. Düzeltilmiş histogram, ısınma
+ *        süresindeki ortalama gecikmeyi (ya da "-Dload.expected.interval.us")
+ *        beklenen istek aralığı kabul ederek eksik örnekleri ekler.
+ *
+ * Diğer ayarlar: load.connections (varsayılan 4), load.duration.seconds (30),
+ * load.warmup.seconds (5), load.initial.subscribers (10000).
+ * Küme üyeliği sunucularla aynıdır (-Dcluster.members / -Dcluster.size).
+ *
+ * Çalıştırma: java -Dload.rate=20000 Clients.LoadGenerator
+ */
+public class LoadGenerator {
+    private static final int SETUP_BATCH = 1000;
+
+    private final String mode = System.getProperty("load.mode", "open");
+    private final double rate = Double.parseDouble(System.getProperty("load.rate", "10000"));
+    private final int connections = Integer.getInteger("load.connections", 4);
+    private final int concurrency = Integer.getInteger("load.concurrency", 16);
+    private final long durationNanos = TimeUnit.SECONDS.toNanos(Long.getLong("load.duration.seconds", 30));
+    private final long warmupNanos = TimeUnit.SECONDS.toNanos(Long.getLong("load.warmup.seconds", 5));
+    private final int initialSubscribers = Integer.getInteger("load.initial.subscribers", 10_000);
+    private final double subscribeRatio = Double.parseDouble(System.getProperty("load.subscribe.ratio", "0.2"));
+    private final long configuredIntervalNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("load.expected.interval.us", 0));
+
+    private final List<Integer> nodes = new ArrayList<>();
+    private final List<Client> clients = new ArrayList<>();
+    private int[] subscriberIds;
+
+    // Ölçüm süresince (ısınma hariç) tutulan sonuçlar
+    private final Operation subscribe = new Operation("subscribe");
+    private final Operation update = new Operation("update");
+    private final LatencyHistogram warmupLatency = new LatencyHistogram();
+    private final AtomicLong completed = new AtomicLong();
+
+    private volatile long measureStart;
+    private volatile long end;
+    private volatile long expectedIntervalNanos;
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+    }
+
+    private void run() throws Exception {
+        for (ClusterMembership.Member member : ClusterMembership.fromSystemProperties().getMembers()) {
+            nodes.add(member.getId());
+        }
+        for (int i = 0; i < connections; i++) {
+            Client client = new Client("load-" + i);
+            int node = nodes.get(i % nodes.size());
+            if (!client.connect(node)) {
+                throw new IOException("Server" + node + "'e bağlanılamadı");
+            }
+            clients.add(client);
+        }
+        prepare();
+
+        System.out.println(String.format(Locale.ROOT,
+            "Yük başlıyor: mod=%s, bağlantı=%d, düğüm=%d, subscribe oranı=%.2f%s",
+            mode, connections, nodes.size(), subscribeRatio,
+            "closed".equals(mode) ? ", eşzamanlılık=" + concurrency * connections : String.format(Locale.ROOT, ", hız=%.0f/sn", rate)));
+
+        long start = System.nanoTime();
+        measureStart = start + warmupNanos;
+        end = measureStart + durationNanos;
+        expectedIntervalNanos = configuredIntervalNanos;
+
+        List<Thread> workers = new ArrayList<>();
+        for (Client client : clients) {
+            if ("closed".equals(mode)) {
+                for (int i = 0; i < concurrency; i++) {
+                    workers.add(startWorker(() -> closedLoop(client), client.getClientId() + "-" + i));
+                }
+            } else if ("open".equals(mode)) {
+                workers.add(startWorker(() -> openLoop(client), client.getClientId()));
+            } else {
+                throw new IllegalArgumentException("Bilinmeyen yük modu: " + mode);
+            }
+        }
+
+        reportProgress(start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        // Açık döngüde gönderilmiş isteklerin yanıtlarını bekle
+        Thread.sleep(1000);
+        for (Client client : clients) {
+            client.close();
+        }
+        report();
+    }
+
+    // Güncellenecek aboneleri oluşturur
+    private void prepare() throws Exception {
+        List<Integer> ids = new ArrayList<>(initialSubscribers);
+        int created = 0;
+        int next = 0;
+        while (created < initialSubscribers) {
+            int size = Math.min(SETUP_BATCH, initialSubscribers - created);
+            List<Subscriber> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(newSubscriber(created + i));
+            }
+            Client client = clients.get(next++ % clients.size());
+            for (Subscriber response : client.subscribeBatch(batch).get()) {
+                if (response.getId() > 0 && response.getStatus() != Status.UNKNOWN) {
+                    ids.add(response.getId());
+                }
+            }
+            created += size;
+        }
+        if (ids.isEmpty() && subscribeRatio < 1) {
+            throw new IllegalStateException("Güncellenecek abone oluşturulamadı");
+        }
+        subscriberIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        System.out.println(subscriberIds.length + " abone hazırlandı");
+    }
+
+    // Sabit hızla planlanan zamanlarda gönderir; gecikme planlanan andan ölçülür
+    private void openLoop(Client client) {
+        long period = (long) (TimeUnit.SECONDS.toNanos(1) * connections / rate);
+        long intended = System.nanoTime();
+        while (intended < end) {
+            long now = System.nanoTime();
+            if (now < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            boolean isSubscribe = ThreadLocalRandom.current().nextDouble() < subscribeRatio;
+            Operation operation = isSubscribe ? subscribe : update;
+            long scheduled = intended;
+            long sent = System.nanoTime();
+            try {
+                client.subscribeAsync(nextRequest(isSubscribe)).whenComplete((response, error) -> {
+                    long done = System.nanoTime();
+                    operation.complete(scheduled, sent, done, error == null && succeeded(response), 0);
+                });
+            } catch (IOException e) {
+                operation.complete(scheduled, sent, System.nanoTime(), false, 0);
+            }
+            intended += period;
+        }
+    }
+
+    // Yanıtı alınca sıradaki isteği gönderen sanal kullanıcı
+    private void closedLoop(Client client) {
+        while (true) {
+            long sent = System.nanoTime();
+            if (sent >= end) {
+                return;
+            }
+            boolean isSubscribe = ThreadLocalRandom.current().nextDouble() < subscribeRatio;
+            Operation operation = isSubscribe ? subscribe : update;
+            boolean ok;
+            try {
+                CompletableFuture<Subscriber> response = client.subscribeAsync(nextRequest(isSubscribe));
+                ok = succeeded(response.get());
+            } catch (Exception e) {
+                ok = false;
+            }
+            long done = System.nanoTime();
+            if (sent < measureStart) {
+                warmupLatency.record(done - sent);
+            } else if (expectedIntervalNanos == 0) {
+                // Isınma bitti; beklenen aralık ısınmadaki ortalama gecikmedir
+                synchronized (this) {
+                    if (expectedIntervalNanos == 0) {
+                        expectedIntervalNanos = Math.max(1, (long) warmupLatency.getMean());
+                    }
+                }
+            }
+            operation.complete(sent, sent, done, ok, expectedIntervalNanos);
+        }
+    }
+
+    private Subscriber nextRequest(boolean isSubscribe) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (isSubscribe || subscriberIds.length == 0) {
+            return newSubscriber(random.nextInt(1_000_000));
+        }
+        return Subscriber.newBuilder()
+            .setId(subscriberIds[random.nextInt(subscriberIds.length)])
+            .setStatus(random.nextBoolean() ? Status.ONLN : Status.OFFL)
+            .build();
+    }
+
+    private static Subscriber newSubscriber(int index) {
+        return Subscriber.newBuilder()
+            .setStatus(Status.SUBS)
+            .setNameSurname("Yük Abonesi " + index)
+            .setStartDate(System.currentTimeMillis())
+            .build();
+    }
+
+    private static boolean succeeded(Subscriber response) {
+        return response != null && response.getStatus() != Status.UNKNOWN && response.getStatus() != Status.PEND;
+    }
+
+    private static Thread startWorker(Runnable task, String name) {
+        Thread thread = new Thread(task, "LoadGenerator-" + name);
+        thread.start();
+        return thread;
+    }
+
+    // Saniyede bir tamamlanan istek sayısını yazar
+    private void reportProgress(long start) throws InterruptedException {
+        long last = 0;
+        for (long tick = start + TimeUnit.SECONDS.toNanos(1); tick <= end; tick += TimeUnit.SECONDS.toNanos(1)) {
+            LockSupport.parkNanos(tick - System.nanoTime());
+            long total = completed.get();
+            System.out.println(String.format(Locale.ROOT, "%4ds %s %8d istek/sn",
+                TimeUnit.NANOSECONDS.toSeconds(tick - start), tick <= measureStart ? "(ısınma)" : "        ", total - last));
+            last = total;
+        }
+    }
+
+    private void report() {
+        double seconds = durationNanos / 1e9;
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "Sonuç (%s döngü, %.0f sn ölçüm):", mode, seconds));
+        if ("closed".equals(mode)) {
+            System.out.println(String.format(Locale.ROOT, "Beklenen istek aralığı (düzeltme için): %.1f µs",
+                expectedIntervalNanos / 1e3));
+        }
+        LatencyHistogram all = new LatencyHistogram();
+        LatencyHistogram allService = new LatencyHistogram();
+        long errors = 0;
+        for (Operation operation : new Operation[] {subscribe, update}) {
+            operation.print(seconds);
+            all.add(operation.latency);
+            allService.add(operation.service);
+            errors += operation.errors.get();
+        }
+        System.out.println(String.format(Locale.ROOT, "Toplam: %.0f istek/sn, %d hata", allService.getCount() / seconds, errors));
+        printPercentiles("  yanıt süresi ", all);
+        printPercentiles("  servis süresi", allService);
+    }
+
+    private static void printPercentiles(String label, LatencyHistogram histogram) {
+        System.out.println(String.format(Locale.ROOT,
+            "%s (ms) ort=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f p99.99=%.3f max=%.3f",
+            label, histogram.getMean() / 1e6,
+            histogram.valueAtPercentile(50) / 1e6, histogram.valueAtPercentile(90) / 1e6,
+            histogram.valueAtPercentile(99) / 1e6, histogram.valueAtPercentile(99.9) / 1e6,
+            histogram.valueAtPercentile(99.99) / 1e6, histogram.getMax() / 1e6));
+    }
+
+    /**
+     * Bir istek türünün ölçümleri. latency coordinated omission düzeltilmiş
+     * yanıt süresi, service isteğin gerçekten gönderildiği andan ölçülen süredir.
+     */
+    private final class Operation {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void complete(long scheduled, long sent, long done, boolean ok, long expectedInterval) {
+            completed.incrementAndGet();
+            if (scheduled < measureStart || scheduled >= end) {
+                return;
+            }
+            latency.recordWithExpectedInterval(done - scheduled, expectedInterval);
+            service.record(done - sent);
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+
+        void print(double seconds) {
+            System.out.println(String.format(Locale.ROOT, "%s: %.0f istek/sn, %d hata", name, service.getCount() / seconds, errors.get()));
+            printPercentiles("  yanıt süresi ", latency);
+            printPercentiles("  servis süresi", service);
+        }
+    }
+}
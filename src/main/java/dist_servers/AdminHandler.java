@@ -1,12 +1,30 @@
 package dist_servers;
 
 import com.hasup.proto.CapacityProto.Capacity;
+import com.hasup.proto.CapacityProto.CapacitySubscription;
 import com.hasup.proto.ConfigurationProto.Configuration;
 import com.hasup.proto.MessageProto.Message;
+import com.hasup.proto.MetricsProto.MetricsSnapshot;
 import java.io.*;
 import java.net.Socket;
 
+/**
+ * Admin bağlantısı. Her mesaj 1 baytlık tip, 4 baytlık uzunluk ve protobuf
+ * yükünden oluşur: 1 kapasite isteği, 2 konfigürasyon (STRT), 3 kapasite
+ * sorgusu (CPCTY), 4 metrik sorgusu (MTRC), 5 kapasite aboneliği.
+ *
+ * Kapasite aboneliğinden sonra bağlantı yalnızca sunucudan panele akar:
+ * sunucu abone sayısı değiştiğinde ve "-Dcapacity.push.interval.ms"
+ * (varsayılan 5000) aralığıyla Capacity gönderir. Değişiklik patlamaları
+ * "-Dcapacity.push.min.interval.ms" (varsayılan 100) içinde tek gönderimde
+ * birleştirilir. Panel bağlantıyı kapatınca abonelik biter.
+ */
 public class AdminHandler implements Runnable {
+    static final String PUSH_INTERVAL_PROPERTY = "capacity.push.interval.ms";
+    static final String PUSH_MIN_INTERVAL_PROPERTY = "capacity.push.min.interval.ms";
+
+    private static final Log LOG = Log.get(AdminHandler.class);
+
     private final Socket socket;
     private final ServerInterface server;
 
@@ -24,33 +42,41 @@ public class AdminHandler implements Runnable {
             while (!socket.isClosed()) {
                 try {
                     int messageType = in.read();
-                    System.out.println("Gelen mesaj tipi: " + messageType);
+                    LOG.debug("Gelen mesaj tipi: {}", messageType);
 
                     // Mesaj uzunluğunu oku
                     int length = in.readInt();
                     byte[] messageBytes = new byte[length];
                     in.readFully(messageBytes);
 
+                    long started = System.nanoTime();
                     if (messageType == 1) {  // Capacity request
                         handleCapacityRequest(messageBytes, out);
+                        server.getMetrics().recordSince("admin.capacity", started);
                     } else if (messageType == 2) {  // Configuration/STRT
                         handleConfigurationRequest(messageBytes, out);
+                        server.getMetrics().recordSince("admin.configuration", started);
                     } else if (messageType == 3) {  // CPCTY query
                         handleCapacityQuery(messageBytes, out);
+                        server.getMetrics().recordSince("admin.capacity.query", started);
+                    } else if (messageType == 4) {  // MTRC query
+                        handleMetricsQuery(messageBytes, out);
+                    } else if (messageType == 5) {  // Capacity subscription
+                        handleCapacitySubscription(messageBytes, out);
                     }
                 } catch (EOFException e) {
                     break;
                 }
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.warn("Admin bağlantısı hatası: {}", e.getMessage());
         }
     }
     
     private void handleCapacityRequest(byte[] data, DataOutputStream out) throws IOException {
         try {
             Capacity request = Capacity.parseFrom(data);
-            System.out.println("Kapasite isteği alındı: Server" + request.getServerId());
+            LOG.debug("Kapasite isteği alındı: Server{}", request.getServerId());
 
             if (request.getServerId() == server.getServerId()) {
                 int activeCount = server.getActiveSubscriberCount();
@@ -70,14 +96,12 @@ public class AdminHandler implements Runnable {
                 out.write(responseBytes);
                 out.flush();
                 
-                System.out.println("Kapasite yanıtı gönderildi: " + activeCount + " aktif abone");
+                LOG.debug("Kapasite yanıtı gönderildi: {} aktif abone", activeCount);
             } else {
-                System.out.println("Server ID uyuşmazlığı: Beklenen=" + server.getServerId() + 
-                                 ", Gelen=" + request.getServerId());
+                LOG.warn("Server ID uyuşmazlığı: Beklenen={}, Gelen={}", server.getServerId(), request.getServerId());
             }
         } catch (Exception e) {
-            System.err.println("Kapasite isteği işlenirken hata: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Kapasite isteği işlenirken hata: {}", e.getMessage(), e);
             
             // Hata durumunda boş yanıt gönder
             out.writeInt(0);
@@ -88,7 +112,7 @@ public class AdminHandler implements Runnable {
     private void handleConfigurationRequest(byte[] data, DataOutputStream out) throws IOException {
         try {
             Configuration config = Configuration.parseFrom(data);
-            System.out.println("Konfigürasyon alındı: Server" + config.getServerId());
+            LOG.info("Konfigürasyon alındı: Server{}", config.getServerId());
 
             Message response;
             if (config.getServerId() == server.getServerId()) {
@@ -102,8 +126,8 @@ public class AdminHandler implements Runnable {
                         .setTimestamp(System.currentTimeMillis())
                         .build();
                     
-                    System.out.println("Server" + server.getServerId() + 
-                        ": Başlama komutu alındı (Tolerans=" + config.getFaultToleranceLevel() + ")");
+                    LOG.info("Server{}: Başlama komutu alındı (Tolerans={})",
+                        server.getServerId(), config.getFaultToleranceLevel());
                 } else {
                     response = Message.newBuilder()
                         .setDemand("STRT")
@@ -122,10 +146,9 @@ public class AdminHandler implements Runnable {
             out.write(responseBytes);
             out.flush();
             
-            System.out.println("Yanıt gönderildi: " + response.getResponse());
+            LOG.info("Yanıt gönderildi: {}", response.getResponse());
         } catch (Exception e) {
-            System.err.println("Konfigürasyon işlenirken hata: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Konfigürasyon işlenirken hata: {}", e.getMessage(), e);
         }
     }
 
@@ -146,11 +169,69 @@ public class AdminHandler implements Runnable {
                 out.write(responseBytes);
                 out.flush();
 
-                System.out.println("Kapasite bilgisi gönderildi: " + response.getServerStatus());
+                LOG.debug("Kapasite bilgisi gönderildi: {}", response.getServerStatus());
+            }
+        } catch (Exception e) {
+            LOG.error("Kapasite sorgusu işlenirken hata: {}", e.getMessage(), e);
+        }
+    }
+
+    private void handleMetricsQuery(byte[] data, DataOutputStream out) throws IOException {
+        try {
+            Message request = Message.parseFrom(data);
+            if ("MTRC".equals(request.getDemand())) {
+                MetricsSnapshot response = server.getMetrics().snapshot();
+
+                byte[] responseBytes = response.toByteArray();
+                out.writeInt(responseBytes.length);
+                out.write(responseBytes);
+                out.flush();
             }
         } catch (Exception e) {
-            System.err.println("Kapasite sorgusu işlenirken hata: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Metrik sorgusu işlenirken hata: {}", e.getMessage(), e);
+        }
+    }
+
+    private void handleCapacitySubscription(byte[] data, DataOutputStream out) {
+        CapacitySubscription request;
+        try {
+            request = CapacitySubscription.parseFrom(data);
+        } catch (IOException e) {
+            LOG.error("Kapasite aboneliği işlenirken hata: {}", e.getMessage());
+            return;
+        }
+        if (request.getServerId() != server.getServerId()) {
+            LOG.warn("Server ID uyuşmazlığı: Beklenen={}, Gelen={}", server.getServerId(), request.getServerId());
+            return;
+        }
+        long interval = request.getIntervalMs() > 0 ? request.getIntervalMs() : Long.getLong(PUSH_INTERVAL_PROPERTY, 5000);
+        long minInterval = Math.min(interval, request.getMinIntervalMs() > 0
+            ? request.getMinIntervalMs() : Long.getLong(PUSH_MIN_INTERVAL_PROPERTY, 100));
+        LOG.info("Kapasite aboneliği başladı: {} (aralık {} ms, en az {} ms)",
+            socket.getRemoteSocketAddress(), interval, minInterval);
+
+        try {
+            while (!socket.isClosed()) {
+                Capacity capacity = server.getCapacity();
+                byte[] responseBytes = capacity.toByteArray();
+                out.writeInt(responseBytes.length);
+                out.write(responseBytes);
+                out.flush();
+                server.getMetrics().counter("admin.capacity.pushed").increment();
+
+                // Bu süre içindeki değişiklikler bir sonraki gönderimde birleşir
+                Thread.sleep(minInterval);
+                server.awaitCapacityChange(capacity.getServerStatus(), interval - minInterval);
+            }
+        } catch (IOException e) {
+            LOG.info("Kapasite aboneliği sona erdi: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,324 @@
+package dist_servers;
+
+import com.hasup.proto.AntiEntropyProto.MerkleNode;
+import com.hasup.proto.AntiEntropyProto.MerkleNodes;
+import com.hasup.proto.AntiEntropyProto.MerkleRoot;
+import com.hasup.proto.AntiEntropyProto.RangeTransfer;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongPredicate;
+
+/**
+ * Replikalar arasındaki farkları arka planda bulup gideren anti-entropy süreci.
+ * Bağlantı kopukken ya da replikasyon kuyruğu taşarken kaybolan değişiklikler
+ * böylece tam durum aktarımı gerekmeden tamamlanır.
+ *
+ * Her turda küçük ID'li düğüm, büyük ID'li her peer ile ayrı bir peer
+ * bağlantısı üzerinden oturum açar. Karşılaştırılan küme, iki düğümün de
+ * sahibi olduğu bölümlerdir:
+ * 1. Başlatan kök özeti gönderir; eşitse oturum biter.
+ * 2. Karşı taraf bölüm özetlerini döner, başlatan farklı bölümleri ister.
+ * 3. Karşı taraf bu bölümlerin aralık özetlerini döner.
+ * 4. Başlatan farklı aralıklardaki kayıtlarını gönderir; karşı taraf
+ *    yalnızca kendisinde daha yeni olan ya da başlatanda olmayan kayıtları döner.
+ * Kayıtlar last_accessed'a göre son yazan kazanır kuralıyla birleştirilir.
+ *
+ * Aralık "-Danti.entropy.interval.seconds" ile verilir (varsayılan 30, 0 kapatır).
+ */
+final class AntiEntropy implements Closeable {
+    static final String INTERVAL_PROPERTY = "anti.entropy.interval.seconds";
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int SESSION_TIMEOUT_MS = 30_000;
+    private static final int TRANSFER_CHUNK = 10_000;
+
+    private final int serverId;
+    private final Log log;
+    private final ClusterMembership cluster;
+    private final HashRing ring;
+    private final SubscriberStore store;
+    private final IntSupplier replicas;
+    private final Function<List<Subscriber>, CompletableFuture<Long>> reconcile;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param replicas Abone başına kopya sayısı (fault_tolerance_level + 1)
+     * @param reconcile Gelen kayıtlardan yereldekinden yeni olanları uygulayıp log'a ekleyen fonksiyon
+     */
+    AntiEntropy(int serverId, ClusterMembership cluster, HashRing ring, SubscriberStore store,
+                IntSupplier replicas, Function<List<Subscriber>, CompletableFuture<Long>> reconcile) {
+        this.serverId = serverId;
+        this.log = Log.get(AntiEntropy.class, serverId);
+        this.cluster = cluster;
+        this.ring = ring;
+        this.store = store;
+        this.replicas = replicas;
+        this.reconcile = reconcile;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Server" + serverId + "-anti-entropy");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Periyodik turları başlatır
+     */
+    void start() {
+        long interval = Long.getLong(INTERVAL_PROPERTY, 30);
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(this::runRound, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Büyük ID'li tüm peer'larla birer oturum yürütür
+     */
+    void runRound() {
+        int copies = replicas.getAsInt();
+        if (copies < 2) {
+            return;  // Replikasyon kapalı, karşılaştırılacak kopya yok
+        }
+        MerkleTree tree = MerkleTree.build(store, ring);
+        for (ClusterMembership.Member peer : cluster.peersOf(serverId)) {
+            if (peer.getId() < serverId) {
+                continue;  // Her çift için oturumu küçük ID'li düğüm başlatır
+            }
+            try {
+                synchronizeWith(peer, tree, copies);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Server{} ile anti-entropy yapılamadı: {}", peer.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void synchronizeWith(ClusterMembership.Member peer, MerkleTree tree, int copies) throws IOException {
+        try (PeerCodec codec = PeerCodec.open(peer, serverId, CONNECT_TIMEOUT_MS, SESSION_TIMEOUT_MS)) {
+            if (!codec.supports(PeerCodec.FEATURE_ANTI_ENTROPY)) {
+                return;
+            }
+            LongPredicate shared = sharedWith(peer.getId(), copies);
+
+            // 1. Kök
+            long root = tree.root(shared);
+            codec.write(PeerCodec.TYPE_MERKLE_ROOT, MerkleRoot.newBuilder().setReplicas(copies).setRoot(root).build());
+            codec.flush();
+            PeerCodec.Frame reply = expect(codec, PeerCodec.TYPE_MERKLE_ROOT, PeerCodec.TYPE_MERKLE_NODES);
+            if (reply.type == PeerCodec.TYPE_MERKLE_ROOT) {
+                return;  // Kopyalar aynı
+            }
+
+            // 2. Bölümler
+            Map<Long, Long> mine = tree.partitionHashes(shared);
+            Map<Long, Long> theirs = new HashMap<>();
+            for (MerkleNode node : MerkleNodes.parseFrom(reply.payload).getNodesList()) {
+                theirs.put(node.getPartition(), node.getHash());
+            }
+            TreeSet<Long> partitions = new TreeSet<>(mine.keySet());
+            partitions.addAll(theirs.keySet());
+            partitions.removeIf(partition -> mine.getOrDefault(partition, 0L).equals(theirs.getOrDefault(partition, 0L)));
+            MerkleNodes.Builder request = MerkleNodes.newBuilder();
+            for (long partition : partitions) {
+                request.addNodes(MerkleNode.newBuilder().setPartition(partition).setRange(-1));
+            }
+            codec.write(PeerCodec.TYPE_MERKLE_NODES, request.build());
+            codec.flush();
+
+            // 3. Aralıklar
+            Map<Long, long[]> theirRanges = new HashMap<>();
+            for (MerkleNode node : MerkleNodes.parseFrom(expect(codec, PeerCodec.TYPE_MERKLE_NODES).payload).getNodesList()) {
+                theirRanges.computeIfAbsent(node.getPartition(), p -> new long[MerkleTree.RANGES_PER_PARTITION])
+                    [node.getRange()] = node.getHash();
+            }
+            List<MerkleNode> ranges = new ArrayList<>();
+            for (long partition : partitions) {
+                long[] ours = tree.rangeHashes(partition);
+                long[] other = theirRanges.getOrDefault(partition, new long[MerkleTree.RANGES_PER_PARTITION]);
+                for (int range = 0; range < MerkleTree.RANGES_PER_PARTITION; range++) {
+                    if (ours[range] != other[range]) {
+                        ranges.add(MerkleNode.newBuilder().setPartition(partition).setRange(range).build());
+                    }
+                }
+            }
+
+            // 4. Kayıtlar
+            List<Subscriber> sent = recordsIn(tree, ranges);
+            writeTransfer(codec, ranges, sent);
+            List<Subscriber> received = readTransfer(codec, null);
+            reconcile.apply(received).join();
+
+            log.info("Server{} ile anti-entropy - {} bölüm, {} aralık farklı; {} kayıt gönderildi, {} kayıt alındı",
+                peer.getId(), partitions.size(), ranges.size(), sent.size(), received.size());
+        }
+    }
+
+    /**
+     * Peer portuna gelen, ilk çerçevesi TYPE_MERKLE_ROOT olan bağlantıyı cevaplar.
+     * Oturum bitene kadar çağıran thread'de çalışır.
+     */
+    void serve(PeerCodec codec) throws IOException {
+        codec.getSocket().setSoTimeout(SESSION_TIMEOUT_MS);
+        MerkleRoot request = MerkleRoot.parseFrom(expect(codec, PeerCodec.TYPE_MERKLE_ROOT).payload);
+        LongPredicate shared = sharedWith(codec.getPeerId(), request.getReplicas());
+        MerkleTree tree = MerkleTree.build(store, ring);
+
+        // 1. Kök
+        if (tree.root(shared) == request.getRoot()) {
+            codec.write(PeerCodec.TYPE_MERKLE_ROOT, request);
+            codec.flush();
+            return;
+        }
+
+        // 2. Bölümler
+        MerkleNodes.Builder partitions = MerkleNodes.newBuilder();
+        for (Map.Entry<Long, Long> partition : tree.partitionHashes(shared).entrySet()) {
+            partitions.addNodes(MerkleNode.newBuilder()
+                .setPartition(partition.getKey()).setRange(-1).setHash(partition.getValue()));
+        }
+        codec.write(PeerCodec.TYPE_MERKLE_NODES, partitions.build());
+        codec.flush();
+
+        // 3. Aralıklar
+        MerkleNodes requested = MerkleNodes.parseFrom(expect(codec, PeerCodec.TYPE_MERKLE_NODES).payload);
+        MerkleNodes.Builder ranges = MerkleNodes.newBuilder();
+        for (MerkleNode node : requested.getNodesList()) {
+            if (!shared.test(node.getPartition())) {
+                continue;
+            }
+            long[] hashes = tree.rangeHashes(node.getPartition());
+            for (int range = 0; range < hashes.length; range++) {
+                if (hashes[range] != 0) {
+                    ranges.addNodes(MerkleNode.newBuilder()
+                        .setPartition(node.getPartition()).setRange(range).setHash(hashes[range]));
+                }
+            }
+        }
+        codec.write(PeerCodec.TYPE_MERKLE_NODES, ranges.build());
+        codec.flush();
+
+        // 4. Kayıtlar: başlatanınkileri uygula, bizde daha yeni olanları geri gönder
+        List<MerkleNode> divergent = new ArrayList<>();
+        List<Subscriber> received = readTransfer(codec, divergent);
+        Map<Integer, Subscriber> theirs = new HashMap<>();
+        for (Subscriber subscriber : received) {
+            theirs.put(subscriber.getId(), subscriber);
+        }
+        List<Subscriber> newer = new ArrayList<>();
+        for (Subscriber ours : recordsIn(tree, divergent)) {
+            Subscriber other = theirs.get(ours.getId());
+            if (other == null || isNewer(ours, other)) {
+                newer.add(ours);
+            }
+        }
+        writeTransfer(codec, null, newer);
+        reconcile.apply(received).join();
+    }
+
+    /**
+     * Aynı aboneye ait iki kayıttan a'nın b'den yeni olup olmadığı.
+     * Önce last_accessed, eşitse status ve isim karşılaştırılır; böylece iki
+     * düğüm de aynı kaydı seçer.
+     */
+    static boolean isNewer(Subscriber a, Subscriber b) {
+        if (a.getLastAccessed() != b.getLastAccessed()) {
+            return a.getLastAccessed() > b.getLastAccessed();
+        }
+        if (a.getStatusValue() != b.getStatusValue()) {
+            return a.getStatusValue() > b.getStatusValue();
+        }
+        return a.getNameSurname().compareTo(b.getNameSurname()) > 0;
+    }
+
+    // Verilen kopya sayısıyla hem bu düğümün hem peer'ın tuttuğu bölümler
+    private LongPredicate sharedWith(int peerId, int copies) {
+        return sharedBy(ring, serverId, peerId, copies);
+    }
+
+    /**
+     * Verilen kopya sayısıyla iki düğümün de sahibi olduğu bölümler
+     */
+    static LongPredicate sharedBy(HashRing ring, int node, int other, int copies) {
+        return partition -> {
+            int[] owners = ring.ownersOfPartition(partition, copies);
+            return HashRing.contains(owners, owners.length, node)
+                && HashRing.contains(owners, owners.length, other);
+        };
+    }
+
+    // Aralıklar dar olduğu için kayıtlar ID'ler tek tek aranarak toplanır
+    private List<Subscriber> recordsIn(MerkleTree tree, List<MerkleNode> ranges) {
+        List<Subscriber> records = new ArrayList<>();
+        for (MerkleNode range : ranges) {
+            long end = Math.min(tree.rangeEnd(range.getPartition(), range.getRange()), (long) Integer.MAX_VALUE + 1);
+            for (long id = Math.max(1, tree.rangeStart(range.getPartition(), range.getRange())); id < end; id++) {
+                Subscriber subscriber = store.get((int) id);
+                if (subscriber != null) {
+                    records.add(subscriber);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static void writeTransfer(PeerCodec codec, List<MerkleNode> ranges, List<Subscriber> records) throws IOException {
+        int start = 0;
+        do {
+            int end = Math.min(start + TRANSFER_CHUNK, records.size());
+            RangeTransfer.Builder chunk = RangeTransfer.newBuilder()
+                .addAllSubscribers(records.subList(start, end))
+                .setLast(end == records.size());
+            if (start == 0 && ranges != null) {
+                chunk.addAllRanges(ranges);
+            }
+            codec.write(PeerCodec.TYPE_RANGE_TRANSFER, chunk.build());
+            start = end;
+        } while (start < records.size());
+        codec.flush();
+    }
+
+    // ranges null değilse ilk çerçevedeki aralıklar eklenir
+    private static List<Subscriber> readTransfer(PeerCodec codec, List<MerkleNode> ranges) throws IOException {
+        List<Subscriber> records = new ArrayList<>();
+        RangeTransfer chunk;
+        do {
+            chunk = RangeTransfer.parseFrom(expect(codec, PeerCodec.TYPE_RANGE_TRANSFER).payload);
+            if (ranges != null) {
+                ranges.addAll(chunk.getRangesList());
+            }
+            records.addAll(chunk.getSubscribersList());
+        } while (!chunk.getLast());
+        return records;
+    }
+
+    private static PeerCodec.Frame expect(PeerCodec codec, byte... types) throws IOException {
+        PeerCodec.Frame frame = codec.read();
+        if (frame == null) {
+            throw new EOFException("Anti-entropy bağlantısı kapandı");
+        }
+        for (byte type : types) {
+            if (frame.type == type) {
+                return frame;
+            }
+        }
+        throw new IOException("Beklenmeyen anti-entropy çerçevesi: " + frame.type);
+    }
+}
@@ -0,0 +1,53 @@
+package dist_servers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Kapasite aboneliği olan admin bağlantılarını abone sayısı değiştiğinde
+ * uyandırır.
+ *
+ * Bekleyen thread önce "armed" bayrağını set eder, sonra değeri tekrar
+ * kontrol edip park eder. Depo yeni kayıt eklediğinde changed çağrılır;
+ * bayrak set değilse (kimse beklemiyorsa ya da zaten uyandırıldıysa) yalnızca
+ * bir volatile okuma yapılır, böylece yazma patlamaları tek uyandırmaya iner.
+ */
+final class CapacityFeed {
+    private final List<Thread> waiters = new CopyOnWriteArrayList<>();
+    private volatile boolean armed;
+
+    /**
+     * Abone sayısı değişti; yazma yolundan çağrılır
+     */
+    void changed() {
+        if (armed) {
+            armed = false;
+            for (Thread waiter : waiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * current, last değerinden farklı olana ya da süre dolana kadar bekler
+     */
+    void await(IntSupplier current, int last, long timeoutMillis) {
+        Thread self = Thread.currentThread();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        waiters.add(self);
+        try {
+            while (!self.isInterrupted()) {
+                armed = true;
+                long remaining = deadline - System.nanoTime();
+                if (current.getAsInt() != last || remaining <= 0) {
+                    return;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiters.remove(self);
+        }
+    }
+}
@@ -1,13 +1,45 @@
 package dist_servers;
 
 import com.hasup.proto.SubscriberProto.Subscriber;
+import com.hasup.proto.SubscriberBatchProto.SubscriberBatch;
 import com.hasup.proto.MessageProto.Message;
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import com.hasup.proto.SubscriberProto.Status;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class ClientHandler implements Runnable {
+    /**
+     * Uzunluk önekinin en üst biti set ise çerçeve tek bir Subscriber değil
+     * SubscriberBatch taşır. Yanıt çerçevesi de aynı biti taşır.
+     */
+    public static final int BATCH_FRAME = 0x80000000;
+
+    /**
+     * İstek başka bir düğümden iletildiyse set edilir; böyle istekler tekrar
+     * iletilmez, böylece iletim iki düğüm arasında döngüye giremez. Yalnızca
+     * küme üyesi adreslerden gelen bağlantılarda dikkate alınır (bkz. acceptedHeader).
+     */
+    static final int FORWARDED_FRAME = 0x40000000;
+
+    /**
+     * Bir bağlantıda yanıtı henüz yazılmamış en fazla istek sayısı. Sınıra
+     * ulaşıldığında sunucu o bağlantıdan okumayı bırakır; TCP akış kontrolü
+     * client'ı yavaşlatır. "-Dclient.max.in.flight" ile değiştirilir.
+     */
+    static final int MAX_IN_FLIGHT = Integer.getInteger("client.max.in.flight", 1024);
+
+    private static final Log LOG = Log.get(ClientHandler.class);
+
+    // Yanıtları sokete yazan göndericiler; WAL ve peer thread'leri soket yazmasını beklemez
+    private static final ExecutorService WRITERS = ServerExecutors.newPerTaskExecutor("client-writer");
+
     private final Socket socket;
     private final ServerInterface server;
 
@@ -19,62 +51,292 @@ public class ClientHandler implements Runnable {
     @Override
     public void run() {
         try {
-            DataInputStream in = new DataInputStream(socket.getInputStream());
-            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
 
-            // İstek boyutunu oku
-            int length = in.readInt();
-            byte[] data = new byte[length];
-            in.readFully(data);
+            boolean fromMember = server.isClusterMember(socket.getInetAddress());
 
-            // Subscriber nesnesini parse et
-            Subscriber request = Subscriber.parseFrom(data);
-            System.out.println("İstek alındı: " + request.getNameSurname());
+            // Yanıtı yazılmamış her istek bir izin tutar; izin yoksa okuma durur
+            Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
 
-            Subscriber response = null;
-            if (request.getStatus() == Status.SUBS) {
-                // Yeni ID ata ve abone oluştur
-                int newId = ((Server1)server).generateNextId();
-                Subscriber newSubscriber = Subscriber.newBuilder(request)
-                    .setId(newId)
-                    .setStartDate(System.currentTimeMillis())
-                    .setLastAccessed(System.currentTimeMillis())
-                    .build();
-                
-                // Server'a ekle
-                if (server.addSubscriber(newSubscriber)) {
-                    response = newSubscriber;
-                    System.out.println("Abone eklendi, ID: " + newId);
+            // Yanıtlar hazır oldukça istek sırasıyla ve tek flush ile WRITERS'ta gönderilir;
+            // bu thread yanıtı beklemeden sonraki isteği okumaya devam eder
+            OrderedResponses responses = new OrderedResponses(frames -> {
+                for (byte[] frame : frames) {
+                    out.write(frame);
                 }
-            }
-
-            // Yanıt gönder
-            if (response != null) {
-                byte[] responseData = response.toByteArray();
-                out.writeInt(responseData.length);
-                out.write(responseData);
                 out.flush();
-                System.out.println("Yanıt gönderildi: ID=" + response.getId());
-            } else {
-                // Başarısız durumda error yanıtı gönder
-                Subscriber errorResponse = Subscriber.newBuilder(request)
-                    .setStatus(Status.UNKNOWN)
-                    .build();
-                byte[] responseData = errorResponse.toByteArray();
-                out.writeInt(responseData.length);
-                out.write(responseData);
-                out.flush();
-                System.out.println("İşlem başarısız - UNKNOWN yanıtı gönderildi");
+                inFlight.release(frames.size());
+            }, this::closeSocket, WRITERS);
+
+            // Bağlantı client tarafından kapatılana kadar ardışık istekleri işle
+            while (!socket.isClosed()) {
+                // İstek başlığını (uzunluk + batch biti) oku
+                int header;
+                try {
+                    header = acceptedHeader(server, in.readInt(), fromMember);
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] data = new byte[frameLength(header)];
+                in.readFully(data);
+
+                if (!inFlight.tryAcquire()) {
+                    server.getMetrics().counter("client.paused").increment();
+                    // Gönderim başarısız olursa izinler geri gelmez; soket kapanınca çık
+                    while (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                        if (socket.isClosed()) {
+                            return;
+                        }
+                    }
+                }
+
+                // İsteği işle; yanıt hazır olunca sırasıyla gönderilir
+                responses.add(handleFrame(server, header, data));
             }
+            // Client yazmayı bitirdi, bekleyen yanıtları gönder
+            responses.awaitAll();
 
         } catch (IOException e) {
-            System.err.println("Client handler hatası: " + e.getMessage());
+            LOG.warn("Client handler hatası: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                System.err.println("Socket kapatma hatası: " + e.getMessage());
+            closeSocket();
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOG.warn("Socket kapatma hatası: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Küme üyesi olmayan bağlantılardan gelen FORWARDED_FRAME bitini siler;
+     * böylece client'lar sahiplik kontrolünü atlatıp isteği yanlış düğümde uygulatamaz
+     */
+    static int acceptedHeader(ServerInterface server, int header, boolean fromMember) {
+        if ((header & FORWARDED_FRAME) == 0 || fromMember) {
+            return header;
+        }
+        server.getMetrics().counter("client.forwarded.untrusted").increment();
+        return header & ~FORWARDED_FRAME;
+    }
+
+    /**
+     * Çerçeve başlığından yük uzunluğunu çıkarır ve sınırları doğrular
+     */
+    static int frameLength(int header) throws IOException {
+        int length = header & ~(BATCH_FRAME | FORWARDED_FRAME);
+        int limit = (header & BATCH_FRAME) != 0 ? NioClientServer.MAX_BATCH_FRAME_SIZE : NioClientServer.MAX_FRAME_SIZE;
+        if (length > limit) {
+            throw new IOException("Geçersiz çerçeve uzunluğu: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Bir istek çerçevesini işler. Dönen future, uzunluk öneki dahil yanıt
+     * çerçevesiyle tamamlanır ve hata ile tamamlanmaz.
+     * Bloklayan ClientHandler ve NioClientServer aynı mantığı paylaşır.
+     * Çerçevenin okunmasından yanıtın hazır olmasına kadar geçen süre
+     * "client.request" ya da "client.batch" metriğine kaydedilir.
+     */
+    static CompletableFuture<byte[]> handleFrame(ServerInterface server, int header, byte[] data) throws IOException {
+        long started = System.nanoTime();
+        Metrics metrics = server.getMetrics();
+        boolean forwardable = (header & FORWARDED_FRAME) == 0;
+        try {
+            if ((header & BATCH_FRAME) != 0) {
+                return handleBatch(server, SubscriberBatch.parseFrom(data), forwardable)
+                    .thenApply(response -> {
+                        metrics.recordSince("client.batch", started);
+                        return encodeFrame(BATCH_FRAME, response.toByteArray());
+                    });
+            }
+            return handleRequest(server, Subscriber.parseFrom(data), forwardable)
+                .thenApply(response -> {
+                    metrics.recordSince("client.request", started);
+                    return encodeFrame(0, response.toByteArray());
+                });
+        } catch (RuntimeException e) {
+            // Örn. ID kiralaması diske yazılamadı; istek başarısız olarak yanıtlanır
+            LOG.error("İstek işlenemedi: {}", e.getMessage());
+            metrics.counter("client.rejected").increment();
+            return CompletableFuture.completedFuture(rejectFrame(header, data));
+        }
+    }
+
+    /**
+     * İstek işlenemeden reddedildiğinde (örn. worker kuyruğu dolu) her eleman
+     * için UNKNOWN yanıtı içeren çerçeveyi döndürür
+     */
+    static byte[] rejectFrame(int header, byte[] data) throws IOException {
+        if ((header & BATCH_FRAME) != 0) {
+            SubscriberBatch.Builder response = SubscriberBatch.newBuilder();
+            for (Subscriber request : SubscriberBatch.parseFrom(data).getSubscribersList()) {
+                response.addSubscribers(failed(request));
             }
+            return encodeFrame(BATCH_FRAME, response.build().toByteArray());
         }
+        return encodeFrame(0, failed(Subscriber.parseFrom(data)).toByteArray());
+    }
+
+    private static byte[] encodeFrame(int flags, byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length)
+            .putInt(flags | payload.length)
+            .put(payload)
+            .array();
+    }
+
+    /**
+     * Tek bir Subscriber isteğini işler ve client'a dönülecek yanıtı üretir.
+     * Başarısız durumda status'u UNKNOWN, uygulanıp onaylanamayan yazmada
+     * status'u PEND olan bir yanıt döner, asla null dönmez.
+     * @param forwardable false ise istek bu düğümde tutulmayan aboneye ait olsa da iletilmez
+     */
+    static CompletableFuture<Subscriber> handleRequest(ServerInterface server, Subscriber request, boolean forwardable) {
+        LOG.debug("İstek alındı: {}", request.getNameSurname());
+        Metrics metrics = server.getMetrics();
+        CompletableFuture<Subscriber> response;
+        if (request.getStatus() == Status.SUBS) {
+            // Yeni ID ata ve abone oluştur
+            Subscriber newSubscriber = newSubscriber(server, request);
+            
+            // Server'a ekle
+            response = server.addSubscriberAsync(newSubscriber)
+                .thenApply(result -> respond(server, newSubscriber, result));
+        } else if (forwardable && request.getId() > 0 && !server.ownsSubscriber(request.getId())) {
+            // Abone bu düğümde tutulmuyor, isteği sahibine ilet
+            metrics.counter("client.forwarded").increment();
+            response = server.forwardRequest(request);
+        } else if (request.getId() > 0) {
+            // Mevcut abonenin durum güncellemesi (ONLN, OFFL, DEL)
+            response = server.addSubscriberAsync(request)
+                .thenApply(result -> respond(server, request, result));
+        } else {
+            response = CompletableFuture.completedFuture(null);
+        }
+
+        return response.handle((result, error) -> {
+            if (result != null) {
+                return result;
+            }
+            
+            // Başarısız durumda error yanıtı gönder
+            metrics.counter("client.failed").increment();
+            return failed(request);
+        });
+    }
+
+    /**
+     * Toplu isteği tek geçişte sunucuya uygular. Yeni aboneler için ID'ler
+     * önceden atanır, bu düğümde tutulan aboneler ServerInterface.addSubscribers
+     * ile tek seferde eklenir ve tek birim olarak replike edilir. Tutulmayan
+     * abonelerin güncellemeleri sahip düğümlere toplu iletilir.
+     */
+    static CompletableFuture<SubscriberBatch> handleBatch(ServerInterface server, SubscriberBatch batch, boolean forwardable) {
+        List<Subscriber> prepared = new ArrayList<>(batch.getSubscribersCount());
+        List<Subscriber> remote = new ArrayList<>();
+        boolean[] forwarded = new boolean[batch.getSubscribersCount()];
+        for (int i = 0; i < forwarded.length; i++) {
+            Subscriber request = batch.getSubscribers(i);
+            if (request.getStatus() == Status.SUBS) {
+                prepared.add(newSubscriber(server, request));
+            } else if (forwardable && request.getId() > 0 && !server.ownsSubscriber(request.getId())) {
+                remote.add(request);
+                forwarded[i] = true;
+            } else {
+                prepared.add(request);
+            }
+        }
+
+        CompletableFuture<SubscriberBatch> local = prepared.isEmpty()
+            ? CompletableFuture.completedFuture(SubscriberBatch.getDefaultInstance())
+            : server.addSubscribersAsync(prepared).handle((results, error) -> batchResponse(server, prepared, results));
+        server.getMetrics().counter("client.batch.items").add(forwarded.length);
+        if (remote.isEmpty()) {
+            return local;
+        }
+        server.getMetrics().counter("client.forwarded").add(remote.size());
+
+        CompletableFuture<List<Subscriber>> forwardedResponses = server.forwardRequests(remote)
+            .exceptionally(error -> {
+                server.getMetrics().counter("client.failed").add(remote.size());
+                List<Subscriber> failures = new ArrayList<>(remote.size());
+                for (Subscriber request : remote) {
+                    failures.add(failed(request));
+                }
+                return failures;
+            });
+        // Yerel ve iletilen yanıtları istek sırasıyla birleştir
+        return local.thenCombine(forwardedResponses, (localResponse, remoteResponses) -> {
+            SubscriberBatch.Builder response = SubscriberBatch.newBuilder();
+            int nextLocal = 0;
+            int nextRemote = 0;
+            for (boolean isForwarded : forwarded) {
+                response.addSubscribers(isForwarded
+                    ? remoteResponses.get(nextRemote++)
+                    : localResponse.getSubscribers(nextLocal++));
+            }
+            return response.build();
+        });
+    }
+
+    // results null ise (işlem hata ile bittiyse) tüm elemanlar başarısız sayılır
+    private static SubscriberBatch batchResponse(ServerInterface server, List<Subscriber> prepared, WriteResult[] results) {
+        SubscriberBatch.Builder response = SubscriberBatch.newBuilder();
+        int succeeded = 0;
+        for (int i = 0; i < prepared.size(); i++) {
+            Subscriber item = prepared.get(i);
+            Subscriber stored = results != null ? respond(server, item, results[i]) : null;
+            if (stored != null) {
+                succeeded++;
+                response.addSubscribers(stored);
+            } else {
+                response.addSubscribers(failed(item));
+            }
+        }
+        if (succeeded < prepared.size()) {
+            server.getMetrics().counter("client.failed").add(prepared.size() - succeeded);
+        }
+        return response.build();
+    }
+
+    /**
+     * Yazma sonucundan client yanıtını üretir; REJECTED için null döner.
+     * UNCONFIRMED yazmada saklanan kayıt PEND durumuyla döner, böylece yeni
+     * abone atanan ID'sini öğrenir ama yazmayı onaylanmış saymaz.
+     */
+    private static Subscriber respond(ServerInterface server, Subscriber request, WriteResult result) {
+        if (result == WriteResult.REJECTED) {
+            return null;
+        }
+        Subscriber stored = request.getStatus() == Status.SUBS ? request : server.getSubscriber(request.getId());
+        if (stored == null || result == WriteResult.APPLIED) {
+            return stored;
+        }
+        server.getMetrics().counter("client.unconfirmed").increment();
+        return Subscriber.newBuilder(stored)
+            .setStatus(Status.PEND)
+            .build();
+    }
+
+    private static Subscriber newSubscriber(ServerInterface server, Subscriber request) {
+        long now = System.currentTimeMillis();
+        return Subscriber.newBuilder(request)
+            .setId(server.nextSubscriberId())
+            .setStartDate(now)
+            .setLastAccessed(now)
+            .build();
+    }
+
+    private static Subscriber failed(Subscriber request) {
+        return Subscriber.newBuilder(request)
+            .setStatus(Status.UNKNOWN)
+            .build();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,199 @@
+package dist_servers;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Kümedeki düğümlerin ID'leri ve adresleri.
+ *
+ * "-Dcluster.members" ile virgülle ayrılmış "id@host:peerPort:clientPort:adminPort"
+ * listesi verilir. Portlar yazılmazsa ("id@host") eski düzene uygun olarak
+ * 5000+id, 6000+id ve 7000+id kullanılır.
+ * Liste verilmezse "-Dcluster.size" (varsayılan 3) kadar düğüm localhost'ta varsayılır.
+ */
+public final class ClusterMembership {
+    static final String MEMBERS_PROPERTY = "cluster.members";
+    static final String SIZE_PROPERTY = "cluster.size";
+
+    private static final int PEER_PORT_BASE = 5000;
+    private static final int CLIENT_PORT_BASE = 6000;
+    private static final int ADMIN_PORT_BASE = 7000;
+
+    /**
+     * Kümedeki tek bir düğüm
+     */
+    public static final class Member {
+        private final int id;
+        private final String host;
+        private final int peerPort;
+        private final int clientPort;
+        private final int adminPort;
+
+        public Member(int id, String host, int peerPort, int clientPort, int adminPort) {
+            this.id = id;
+            this.host = host;
+            this.peerPort = peerPort;
+            this.clientPort = clientPort;
+            this.adminPort = adminPort;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPeerPort() {
+            return peerPort;
+        }
+
+        public int getClientPort() {
+            return clientPort;
+        }
+
+        public int getAdminPort() {
+            return adminPort;
+        }
+
+        @Override
+        public String toString() {
+            return id + "@" + host + ":" + peerPort + ":" + clientPort + ":" + adminPort;
+        }
+    }
+
+    private final Map<Integer, Member> members;
+
+    public ClusterMembership(List<Member> members) {
+        Map<Integer, Member> byId = new TreeMap<>();
+        for (Member member : members) {
+            if (byId.put(member.getId(), member) != null) {
+                throw new IllegalArgumentException("Aynı ID'ye sahip birden fazla düğüm: " + member.getId());
+            }
+        }
+        if (byId.isEmpty()) {
+            throw new IllegalArgumentException("Küme üyeliği boş");
+        }
+        this.members = Collections.unmodifiableMap(byId);
+    }
+
+    /**
+     * cluster.members / cluster.size sistem özelliklerinden üyeliği oluşturur
+     */
+    public static ClusterMembership fromSystemProperties() {
+        String spec = System.getProperty(MEMBERS_PROPERTY);
+        if (spec != null && !spec.trim().isEmpty()) {
+            return parse(spec);
+        }
+        return localhost(Integer.getInteger(SIZE_PROPERTY, 3));
+    }
+
+    /**
+     * "id@host[:peerPort:clientPort:adminPort],..." biçimindeki listeyi çözer
+     */
+    public static ClusterMembership parse(String spec) {
+        List<Member> members = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            try {
+                int at = entry.indexOf('@');
+                if (at <= 0) {
+                    throw new IllegalArgumentException("'@' eksik");
+                }
+                int id = Integer.parseInt(entry.substring(0, at));
+                String[] address = entry.substring(at + 1).split(":");
+                if (address.length == 1) {
+                    members.add(defaultMember(id, address[0]));
+                } else if (address.length == 4) {
+                    members.add(new Member(id, address[0],
+                        Integer.parseInt(address[1]), Integer.parseInt(address[2]), Integer.parseInt(address[3])));
+                } else {
+                    throw new IllegalArgumentException("port sayısı 0 ya da 3 olmalı");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Geçersiz küme üyesi '" + entry + "': " + e.getMessage(), e);
+            }
+        }
+        return new ClusterMembership(members);
+    }
+
+    /**
+     * localhost üzerinde 1..size ID'li düğümlerden oluşan üyelik
+     */
+    public static ClusterMembership localhost(int size) {
+        List<Member> members = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            members.add(defaultMember(id, "localhost"));
+        }
+        return new ClusterMembership(members);
+    }
+
+    private static Member defaultMember(int id, String host) {
+        return new Member(id, host, PEER_PORT_BASE + id, CLIENT_PORT_BASE + id, ADMIN_PORT_BASE + id);
+    }
+
+    /**
+     * ID'ye göre düğümü döndürür, yoksa null
+     */
+    public Member get(int id) {
+        return members.get(id);
+    }
+
+    /**
+     * Tüm düğümler, ID sırasıyla
+     */
+    public List<Member> getMembers() {
+        return new ArrayList<>(members.values());
+    }
+
+    /**
+     * Verilen düğüm dışındaki tüm düğümler, ID sırasıyla
+     */
+    public List<Member> peersOf(int id) {
+        List<Member> peers = new ArrayList<>(members.size());
+        for (Member member : members.values()) {
+            if (member.getId() != id) {
+                peers.add(member);
+            }
+        }
+        return peers;
+    }
+
+    /**
+     * Adres bir düğümün host'una çözülüyorsa true. Düğümler arası iletilen
+     * isteklerin yalnızca küme üyelerinden kabul edilmesi için kullanılır.
+     */
+    public boolean isMemberAddress(InetAddress address) {
+        for (Member member : members.values()) {
+            try {
+                for (InetAddress memberAddress : InetAddress.getAllByName(member.getHost())) {
+                    if (memberAddress.equals(address)
+                            || (memberAddress.isLoopbackAddress() && address.isLoopbackAddress())) {
+                        return true;
+                    }
+                }
+            } catch (UnknownHostException e) {
+                // Çözülemeyen düğüm adresi hiçbir bağlantıyla eşleşmez
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    @Override
+    public String toString() {
+        return members.values().toString();
+    }
+}
@@ -0,0 +1,114 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * Başka bir depoyu saran ve her durum (SUBS/ONLN/OFFL/DEL) için abone
+ * sayısını artımlı olarak tutan depo.
+ *
+ * Tüm yazmalar (istemci istekleri, peer senkronizasyonu, WAL/snapshot geri
+ * yüklemesi) depo üzerinden geçtiği için sayaçlar her durum geçişinde
+ * güncellenir. put önceki durumu döndürdüğünden eski durumun sayacı azaltılıp
+ * yenisininki artırılır; böylece kapasite sorguları abone sayısından bağımsız
+ * olarak sabit zamanda cevaplanır. Kayıt sayısı arttığında verilen dinleyici
+ * çağrılır (kapasite aboneliklerini uyandırmak için).
+ */
+public class CountingSubscriberStore implements SubscriberStore {
+    // Tanınmayan durumlar UNKNOWN olarak sayılır
+    private static final int SLOTS = Status.DEL_VALUE + 1;
+
+    private final SubscriberStore delegate;
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(SLOTS);
+    private final Runnable onSizeChanged;
+
+    public CountingSubscriberStore(SubscriberStore delegate) {
+        this(delegate, () -> { });
+    }
+
+    public CountingSubscriberStore(SubscriberStore delegate, Runnable onSizeChanged) {
+        this.delegate = delegate;
+        this.onSizeChanged = onSizeChanged;
+        // Kalıcı depolar açılışta dolu gelebilir
+        delegate.forEach(subscriber -> counts.incrementAndGet(slot(subscriber)));
+    }
+
+    @Override
+    public Subscriber get(int id) {
+        return delegate.get(id);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return delegate.containsKey(id);
+    }
+
+    @Override
+    public Status put(Subscriber subscriber) {
+        Status previous = delegate.put(subscriber);
+        int slot = slot(subscriber);
+        if (previous == null) {
+            counts.incrementAndGet(slot);
+            onSizeChanged.run();
+        } else if (slot(previous) != slot) {
+            counts.decrementAndGet(slot(previous));
+            counts.incrementAndGet(slot);
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean putIfAbsent(Subscriber subscriber) {
+        boolean added = delegate.putIfAbsent(subscriber);
+        if (added) {
+            counts.incrementAndGet(slot(subscriber));
+            onSizeChanged.run();
+        }
+        return added;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        for (int i = 0; i < SLOTS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int countByStatus(Status status) {
+        return counts.get(slot(status));
+    }
+
+    @Override
+    public void forEach(Consumer<Subscriber> action) {
+        delegate.forEach(action);
+    }
+
+    /**
+     * Sarılan depo
+     */
+    public SubscriberStore getDelegate() {
+        return delegate;
+    }
+
+    private static int slot(Subscriber subscriber) {
+        return slot(subscriber.getStatusValue());
+    }
+
+    private static int slot(Status status) {
+        return status == Status.UNRECOGNIZED ? Status.UNKNOWN_VALUE : slot(status.getNumber());
+    }
+
+    private static int slot(int status) {
+        return status >= 0 && status < SLOTS ? status : Status.UNKNOWN_VALUE;
+    }
+}
@@ -0,0 +1,188 @@
+package dist_servers;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Peer'ların canlılığını heartbeat'lerin geliş aralıklarından tahmin eden
+ * phi-accrual hata dedektörü.
+ *
+ * Her peer için son aralıkların ortalaması ve standart sapması tutulur.
+ * phi, son heartbeat'ten bu yana geçen sürenin bu dağılıma göre ne kadar
+ * olağandışı olduğudur (phi = -log10(P(aralık > geçen süre))). phi
+ * "-Dfailure.detector.threshold" (varsayılan 8) değerini aşan peer şüpheli
+ * sayılır. "-Dfailure.detector.pause.ms" (varsayılan 200) kadar ek gecikme
+ * normal kabul edilir. Varsayılan 100 ms heartbeat aralığıyla düşen bir peer
+ * yaklaşık yarım saniyede fark edilir.
+ *
+ * Hiç heartbeat alınmamış peer canlı sayılır; bağlantı hataları yine
+ * replikasyon ve iletim katmanlarında ayrıca ele alınır.
+ */
+final class FailureDetector implements Closeable {
+    static final String INTERVAL_PROPERTY = "heartbeat.interval.ms";
+    static final String THRESHOLD_PROPERTY = "failure.detector.threshold";
+    static final String PAUSE_PROPERTY = "failure.detector.pause.ms";
+
+    private static final int WINDOW = 1000;
+    private static final double MIN_STD_DEVIATION_MS = 50;
+
+    private final Log log;
+    private final long intervalMillis;
+    private final double threshold;
+    private final long pauseMillis;
+    private final Map<Integer, History> histories = new ConcurrentHashMap<>();
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    FailureDetector(int serverId) {
+        this.log = Log.get(FailureDetector.class, serverId);
+        this.intervalMillis = heartbeatInterval();
+        this.threshold = Double.parseDouble(System.getProperty(THRESHOLD_PROPERTY, "8"));
+        this.pauseMillis = Long.getLong(PAUSE_PROPERTY, 200);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Server" + serverId + "-failure-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Peer bağlantılarında heartbeat gönderme aralığı
+     */
+    static long heartbeatInterval() {
+        return Long.getLong(INTERVAL_PROPERTY, 100);
+    }
+
+    /**
+     * Peer şüpheli hale geldiğinde dedektör thread'inden çağrılacak dinleyici
+     */
+    void addListener(IntConsumer onSuspected) {
+        listeners.add(onSuspected);
+    }
+
+    /**
+     * Şüpheli durumuna geçişleri heartbeat aralığında denetler
+     */
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Peer'dan heartbeat ya da herhangi bir çerçeve alındı
+     */
+    void heartbeat(int peerId) {
+        histories.computeIfAbsent(peerId, id -> new History(intervalMillis)).heartbeat(threshold, pauseMillis);
+    }
+
+    /**
+     * Peer için şu anki phi değeri; hiç heartbeat alınmadıysa 0
+     */
+    double phi(int peerId) {
+        History history = histories.get(peerId);
+        return history != null ? history.phi(System.nanoTime(), pauseMillis) : 0;
+    }
+
+    /**
+     * Peer şüpheli değilse true
+     */
+    boolean isAvailable(int peerId) {
+        return phi(peerId) < threshold;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void check() {
+        for (Map.Entry<Integer, History> entry : histories.entrySet()) {
+            int peerId = entry.getKey();
+            double phi = entry.getValue().phi(System.nanoTime(), pauseMillis);
+            if (entry.getValue().updateSuspected(phi >= threshold)) {
+                if (phi >= threshold) {
+                    log.warn("Server{} yanıt vermiyor (phi={})", peerId, String.format("%.1f", phi));
+                    for (IntConsumer listener : listeners) {
+                        try {
+                            listener.accept(peerId);
+                        } catch (RuntimeException e) {
+                            log.error("Hata dedektörü dinleyicisi başarısız: {}", e.getMessage(), e);
+                        }
+                    }
+                } else {
+                    log.info("Server{} yeniden yanıt veriyor", peerId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bir peer'ın son WINDOW heartbeat aralığı (ms)
+     */
+    private static final class History {
+        private final double[] intervals = new double[WINDOW];
+        private int count;
+        private int next;
+        private double sum;
+        private double sumOfSquares;
+        private long lastNanos;
+        private boolean started;
+        private boolean suspected;
+
+        // İlk heartbeat'ten önce beklenen aralık etrafında bir dağılımla başlanır
+        History(long expectedMillis) {
+            add(expectedMillis * 0.75);
+            add(expectedMillis * 1.25);
+        }
+
+        synchronized void heartbeat(double threshold, long pauseMillis) {
+            long now = System.nanoTime();
+            // Kopukluktan sonra gelen ilk heartbeat'in uzun aralığı dağılımı bozmasın
+            if (started && phi(now, pauseMillis) < threshold) {
+                add((now - lastNanos) / 1_000_000.0);
+            }
+            lastNanos = now;
+            started = true;
+        }
+
+        synchronized double phi(long now, long pauseMillis) {
+            double elapsed = (now - lastNanos) / 1_000_000.0;
+            double mean = sum / count + pauseMillis;
+            double variance = sumOfSquares / count - (sum / count) * (sum / count);
+            double deviation = Math.max(Math.sqrt(Math.max(variance, 0)), MIN_STD_DEVIATION_MS);
+
+            // Normal dağılımın kuyruk olasılığı için lojistik yaklaşım
+            double y = (elapsed - mean) / deviation;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            double tail = elapsed > mean ? e / (1 + e) : 1 - 1 / (1 + e);
+            return -Math.log10(Math.max(tail, Double.MIN_VALUE));
+        }
+
+        // Durum değiştiyse true
+        synchronized boolean updateSuspected(boolean now) {
+            boolean changed = suspected != now;
+            suspected = now;
+            return changed;
+        }
+
+        private void add(double interval) {
+            if (count == WINDOW) {
+                double evicted = intervals[next];
+                sum -= evicted;
+                sumOfSquares -= evicted * evicted;
+            } else {
+                count++;
+            }
+            intervals[next] = interval;
+            next = (next + 1) % WINDOW;
+            sum += interval;
+            sumOfSquares += interval * interval;
+        }
+    }
+}
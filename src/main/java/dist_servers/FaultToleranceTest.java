@@ -4,6 +4,7 @@ import Clients.Client;
 import com.hasup.proto.ConfigurationProto.Configuration;
 import com.hasup.proto.SubscriberProto.Status;
 import com.hasup.proto.SubscriberProto.Subscriber;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -84,8 +85,12 @@ public class FaultToleranceTest {
                     .setLastAccessed(System.currentTimeMillis())
                     .build();
                     
-                if (client.subscribe(subscriber)) {
-                    System.out.println("Abone oluşturuldu: User" + i + " (Server" + serverId + ")");
+                try {
+                    if (client.subscribe(subscriber) != null) {
+                        System.out.println("Abone oluşturuldu: User" + i + " (Server" + serverId + ")");
+                    }
+                } catch (IOException e) {
+                    System.err.println("Abone oluşturulamadı: " + e.getMessage());
                 }
             }
         }
@@ -119,8 +124,12 @@ public class FaultToleranceTest {
                     .setNameSurname("faultuser")
                     .setLastAccessed(System.currentTimeMillis())
                     .build();
-                if (newClient.subscribe(subscriber)) {
-                    System.out.println("Yeni abone kaydı başarılı.");
+                try {
+                    if (newClient.subscribe(subscriber) != null) {
+                        System.out.println("Yeni abone kaydı başarılı.");
+                    }
+                } catch (IOException e) {
+                    System.err.println("Yeni abone kaydı başarısız: " + e.getMessage());
                 }
             }
         }
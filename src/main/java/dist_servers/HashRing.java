@@ -0,0 +1,145 @@
+package dist_servers;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Abone ID'lerini düğümlere dağıtan tutarlı hash halkası.
+ *
+ * ID uzayı sabit büyüklükte bölümlere ayrılır ve halkaya bölüm numarası
+ * yerleştirilir; böylece IdAllocator'ın kiraladığı bir ID bloğunun tamamı
+ * aynı düğümlere düşer.
+ * Her düğüm halkaya "-Dcluster.vnodes" (varsayılan 128) sanal düğümle yerleşir.
+ * Bir bölümün sahipleri, bölümün hash'inden başlayarak saat yönünde karşılaşılan
+ * ilk N farklı düğümdür; ilk sahip birincil sahiptir. Düğüm eklenip
+ * çıkarıldığında yalnızca komşu aralıklardaki bölümlerin sahibi değişir.
+ * Değişmezdir, thread-safe'tir.
+ */
+final class HashRing {
+    static final String VIRTUAL_NODES_PROPERTY = "cluster.vnodes";
+
+    private final long[] tokens;
+    private final int[] nodes;
+    private final int nodeCount;
+    private final int partitionSize;
+
+    /**
+     * @param partitionSize Bir bölümdeki ID sayısı
+     */
+    HashRing(Collection<Integer> nodeIds, int partitionSize) {
+        this(nodeIds, partitionSize, Integer.getInteger(VIRTUAL_NODES_PROPERTY, 128));
+    }
+
+    HashRing(Collection<Integer> nodeIds, int partitionSize, int virtualNodes) {
+        if (nodeIds.isEmpty() || virtualNodes <= 0 || partitionSize <= 0) {
+            throw new IllegalArgumentException("Halka için en az bir düğüm, sanal düğüm ve pozitif bölüm büyüklüğü gerekli");
+        }
+        this.nodeCount = nodeIds.size();
+        this.partitionSize = partitionSize;
+
+        // (token, düğüm) çiftlerini token'a göre sırala
+        long[][] entries = new long[nodeCount * virtualNodes][];
+        int i = 0;
+        for (int node : nodeIds) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[i++] = new long[] {mix(((long) node << 32) | v), node};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        this.tokens = new long[entries.length];
+        this.nodes = new int[entries.length];
+        for (i = 0; i < entries.length; i++) {
+            tokens[i] = entries[i][0];
+            nodes[i] = (int) entries[i][1];
+        }
+    }
+
+    /**
+     * ID'nin düştüğü bölüm
+     */
+    long partitionOf(int id) {
+        return Integer.toUnsignedLong(id) / partitionSize;
+    }
+
+    int getPartitionSize() {
+        return partitionSize;
+    }
+
+    /**
+     * ID'nin birincil sahibi olan düğüm
+     */
+    int primaryOf(int id) {
+        return primaryOfPartition(partitionOf(id));
+    }
+
+    /**
+     * Bölümün birincil sahibi olan düğüm
+     */
+    int primaryOfPartition(long partition) {
+        return nodes[firstToken(partition)];
+    }
+
+    /**
+     * ID'yi tutan düğümler, birincil sahip ilk sırada
+     * @param replicas Kopya sayısı, düğüm sayısıyla sınırlanır
+     */
+    int[] ownersOf(int id, int replicas) {
+        return ownersOfPartition(partitionOf(id), replicas);
+    }
+
+    /**
+     * Bölümü tutan düğümler, birincil sahip ilk sırada
+     * @param replicas Kopya sayısı, düğüm sayısıyla sınırlanır
+     */
+    int[] ownersOfPartition(long partition, int replicas) {
+        int count = Math.max(1, Math.min(replicas, nodeCount));
+        int[] owners = new int[count];
+        int found = 0;
+        for (int i = firstToken(partition); found < count; i = (i + 1) % tokens.length) {
+            int node = nodes[i];
+            if (!contains(owners, found, node)) {
+                owners[found++] = node;
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Düğüm, ID'nin ilk "replicas" sahibinden biriyse true
+     */
+    boolean isOwner(int node, int id, int replicas) {
+        int[] owners = ownersOf(id, replicas);
+        return contains(owners, owners.length, node);
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Hash'i bölümünkinden büyük ya da eşit ilk token, yoksa başa dönülür
+    private int firstToken(long partition) {
+        int index = Arrays.binarySearch(tokens, mix(partition));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == tokens.length ? 0 : index;
+    }
+
+    // 64 bit karıştırıcı (SplitMix64 son adımı)
+    static long mix(long value) {
+        long h = value + 0x9e3779b97f4a7c15L;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,132 @@
+package dist_servers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Yeni aboneler için küme genelinde tekil ID dağıtır.
+ *
+ * ID uzayı "-Did.block.size" (varsayılan 10.000) büyüklüğünde bloklara
+ * bölünür ve her blok, hash halkasında birincil sahibi olan düğüme aittir.
+ * Düğüm sıradaki kendi bloğunu kiralar, kiralamayı veri dizinindeki
+ * "id.lease" dosyasına yazar ve blok bitene kadar ID'leri yerel bir atomik
+ * artırımla verir. Koordinatör ya da düğümler arası mesaj gerekmez;
+ * yeniden başlatmada daha önce kiralanmış bloklar tekrar kullanılmaz.
+ * Tüm düğümlerde blok büyüklüğü ve küme üyeliği aynı olmalıdır.
+ */
+final class IdAllocator {
+    static final String BLOCK_SIZE_PROPERTY = "id.block.size";
+
+    private final int serverId;
+    private final Log log;
+    private final HashRing ring;
+    private final Path leaseFile;
+    private volatile Block current = new Block(0, 0);
+    private long lastLeased = -1;
+
+    IdAllocator(int serverId, HashRing ring) {
+        this.serverId = serverId;
+        this.log = Log.get(IdAllocator.class, serverId);
+        this.ring = ring;
+        this.leaseFile = ServerPaths.dataDir(serverId).resolve("id.lease");
+        try {
+            if (Files.exists(leaseFile)) {
+                lastLeased = ByteBuffer.wrap(Files.readAllBytes(leaseFile)).getLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("ID kiralama dosyası okunamadı: " + leaseFile, e);
+        }
+    }
+
+    /**
+     * Halka ile aynı bölüm büyüklüğü kullanılmalıdır
+     */
+    static int blockSize() {
+        return Integer.getInteger(BLOCK_SIZE_PROPERTY, 10_000);
+    }
+
+    /**
+     * Kurtarılan kayıtlarda görülen en büyük ID'den önceki blokları kullanılmış sayar
+     * (kiralama dosyası olmadan oluşturulmuş veri dizinleri için)
+     */
+    synchronized void reserveUpTo(int maxUsedId) {
+        long partition = ring.partitionOf(maxUsedId);
+        if (partition > lastLeased) {
+            lastLeased = partition;
+            current = new Block(0, 0);
+        }
+    }
+
+    /**
+     * Sıradaki ID'yi döndürür; blok bitince yenisi kiralanır
+     */
+    int next() {
+        while (true) {
+            Block block = current;
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return (int) id;
+            }
+            renew(block);
+        }
+    }
+
+    private synchronized void renew(Block exhausted) {
+        if (current != exhausted) {
+            return;  // Başka bir thread yeniledi
+        }
+        long size = ring.getPartitionSize();
+        long partition = lastLeased + 1;
+        while (ring.primaryOfPartition(partition) != serverId) {
+            partition++;
+        }
+        long end = (partition + 1) * size;
+        if (end - 1 > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Server" + serverId + ": Abone ID uzayı tükendi");
+        }
+        persist(partition);
+        lastLeased = partition;
+        // 0 geçersiz ID olduğu için ilk blok 1'den başlar
+        current = new Block(Math.max(1, partition * size), end);
+        log.info("ID bloğu kiralandı - {}..{}", current.start, end - 1);
+    }
+
+    // Kiralama, bloktan ID verilmeden önce diske yazılmalı
+    private void persist(long partition) {
+        Path tmp = leaseFile.resolveSibling(leaseFile.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(partition);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, leaseFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("ID kiralaması kaydedilemedi: " + leaseFile, e);
+        }
+    }
+
+    private static final class Block {
+        private final long start;
+        private final long end;
+        // Bitmiş blokta da artmaya devam ettiği için int taşmasın diye long
+        private final AtomicLong next;
+
+        Block(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.next = new AtomicLong(start);
+        }
+    }
+}
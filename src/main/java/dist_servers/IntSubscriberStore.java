@@ -0,0 +1,243 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * int anahtarlı, primitive dizilerle çalışan abone deposu.
+ *
+ * Her abone için protobuf nesnesi ve kutulanmış Integer anahtar tutmak yerine
+ * status, start_date ve last_accessed paralel primitive dizilerde, isimler
+ * intern edilmiş String olarak saklanır. get() çağrısında Subscriber nesnesi
+ * talep üzerine yeniden oluşturulur.
+ *
+ * Anahtarlar segmentlere bölünür; her segment kendi kilidiyle korunan,
+ * doğrusal sondalamalı (open addressing) bir tablodur. forEach her segmentin
+ * dizilerini kilit altında kopyalar, geri çağrıyı kilit dışında çalıştırır.
+ */
+public class IntSubscriberStore implements SubscriberStore {
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final AtomicInteger size = new AtomicInteger();
+
+    public IntSubscriberStore() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY);
+        }
+    }
+
+    @Override
+    public Subscriber get(int id) {
+        int hash = hash(id);
+        return segmentFor(hash).get(id, hash);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        int hash = hash(id);
+        return segmentFor(hash).contains(id, hash);
+    }
+
+    @Override
+    public Status put(Subscriber subscriber) {
+        int hash = hash(subscriber.getId());
+        return segmentFor(hash).put(subscriber, hash, false);
+    }
+
+    @Override
+    public boolean putIfAbsent(Subscriber subscriber) {
+        int hash = hash(subscriber.getId());
+        return segmentFor(hash).put(subscriber, hash, true) == null;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void forEach(Consumer<Subscriber> action) {
+        for (Segment segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    // murmur3 fmix32: ardışık ID'leri segmentlere ve slotlara dağıtır
+    static int hash(int id) {
+        int h = id;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Tek bir kilitle korunan open addressing tablosu.
+     * Kayıt silme olmadığı için sondalama zinciri hiçbir zaman kopmaz.
+     */
+    private final class Segment {
+        private int[] keys;
+        private byte[] statuses;
+        private long[] startDates;
+        private long[] lastAccessed;
+        private String[] names;
+        private boolean[] occupied;
+        private int count;
+        private int mask;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        // forEach için dizilerin kopyası; kaynak segmentin kilidi tutulurken çağrılır
+        private Segment(Segment source) {
+            keys = source.keys.clone();
+            statuses = source.statuses.clone();
+            startDates = source.startDates.clone();
+            lastAccessed = source.lastAccessed.clone();
+            names = source.names.clone();
+            occupied = source.occupied.clone();
+            count = source.count;
+            mask = source.mask;
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            statuses = new byte[capacity];
+            startDates = new long[capacity];
+            lastAccessed = new long[capacity];
+            names = new String[capacity];
+            occupied = new boolean[capacity];
+            mask = capacity - 1;
+        }
+
+        synchronized Subscriber get(int id, int hash) {
+            int slot = find(id, hash);
+            return slot >= 0 ? materialize(slot) : null;
+        }
+
+        synchronized boolean contains(int id, int hash) {
+            return find(id, hash) >= 0;
+        }
+
+        synchronized void clear() {
+            size.addAndGet(-count);
+            count = 0;
+            allocate(INITIAL_SEGMENT_CAPACITY);
+        }
+
+        synchronized Status put(Subscriber subscriber, int hash, boolean onlyIfAbsent) {
+            int id = subscriber.getId();
+            int slot = find(id, hash);
+            if (slot >= 0) {
+                Status previous = SubscriberStore.statusOf(statuses[slot]);
+                if (!onlyIfAbsent) {
+                    write(slot, subscriber);
+                }
+                return previous;
+            }
+
+            if ((count + 1) * 4L > (mask + 1) * 3L) {
+                resize();
+            }
+            slot = freeSlot(hash);
+            keys[slot] = id;
+            occupied[slot] = true;
+            write(slot, subscriber);
+            count++;
+            size.incrementAndGet();
+            return null;
+        }
+
+        void forEach(Consumer<Subscriber> action) {
+            Segment copy;
+            synchronized (this) {
+                copy = new Segment(this);
+            }
+            for (int slot = 0; slot < copy.occupied.length; slot++) {
+                if (copy.occupied[slot]) {
+                    action.accept(copy.materialize(slot));
+                }
+            }
+        }
+
+        private int find(int id, int hash) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                if (!occupied[slot]) {
+                    return -1;
+                }
+                if (keys[slot] == id) {
+                    return slot;
+                }
+            }
+        }
+
+        private int freeSlot(int hash) {
+            int slot = hash & mask;
+            while (occupied[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void write(int slot, Subscriber subscriber) {
+            statuses[slot] = (byte) subscriber.getStatusValue();
+            startDates[slot] = subscriber.getStartDate();
+            lastAccessed[slot] = subscriber.getLastAccessed();
+            names[slot] = subscriber.getNameSurname().intern();
+        }
+
+        private Subscriber materialize(int slot) {
+            return Subscriber.newBuilder()
+                .setId(keys[slot])
+                .setStatusValue(statuses[slot])
+                .setNameSurname(names[slot])
+                .setStartDate(startDates[slot])
+                .setLastAccessed(lastAccessed[slot])
+                .build();
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            byte[] oldStatuses = statuses;
+            long[] oldStartDates = startDates;
+            long[] oldLastAccessed = lastAccessed;
+            String[] oldNames = names;
+            boolean[] oldOccupied = occupied;
+            int oldCapacity = mask + 1;
+
+            allocate(oldCapacity * 2);
+            for (int i = 0; i < oldCapacity; i++) {
+                if (!oldOccupied[i]) {
+                    continue;
+                }
+                int slot = freeSlot(hash(oldKeys[i]));
+                keys[slot] = oldKeys[i];
+                statuses[slot] = oldStatuses[i];
+                startDates[slot] = oldStartDates[i];
+                lastAccessed[slot] = oldLastAccessed[i];
+                names[slot] = oldNames[i];
+                occupied[slot] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package dist_servers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Gecikme değerlerini (nanosaniye) sabit bellekte tutan log-lineer histogram.
+ *
+ * 128 ns'ye kadar değerler birebir, daha büyükleri her ikinin kuvveti
+ * aralığında 64 eşit dilimle saklanır; yüzdelik hatası %1,6'yı geçmez.
+ * Eşzamanlı kayıt için thread-safe'tir.
+ *
+ * Coordinated omission: istemci yavaş yanıtı beklerken göndermesi gereken
+ * istekleri gönderemezse bu isteklerin gecikmesi hiç ölçülmez ve yüzdelikler
+ * olduğundan iyi görünür. Açık döngüde gecikme isteğin planlanan gönderim
+ * anından ölçülerek, kapalı döngüde recordWithExpectedInterval ile eksik
+ * kalan örnekler eklenerek bu hata düzeltilir.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = TimeUnit.HOURS.toNanos(1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Bir gecikme değeri ekler; bir saati aşan değerler bir saat sayılır
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Değeri ekler; değer beklenen istek aralığından uzunsa, istemci beklerken
+     * gönderilemeyen isteklerin gecikmelerini de (değer - k * aralık) ekler
+     * @param expectedIntervalNanos İstekler arasında beklenen süre, 0 ise düzeltme yapılmaz
+     */
+    public void recordWithExpectedInterval(long nanos, long expectedIntervalNanos) {
+        record(nanos);
+        if (expectedIntervalNanos <= 0) {
+            return;
+        }
+        for (long missing = nanos - expectedIntervalNanos; missing >= expectedIntervalNanos; missing -= expectedIntervalNanos) {
+            record(missing);
+        }
+    }
+
+    /**
+     * Diğer histogramın kayıtlarını bu histograma ekler
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long n = other.counts.get(i);
+            if (n != 0) {
+                counts.addAndGet(i, n);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Şu anki kayıtların kopyası; kopyalama sırasında gelen kayıtlar kısmen yansıyabilir
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * Bu histogramın daha önce alınmış bir kopyasından bu yana eklenen kayıtlar.
+     * Dönemin en büyük değeri bilinmediğinden dolu en üst dilimden tahmin edilir.
+     */
+    public LatencyHistogram since(LatencyHistogram earlier) {
+        LatencyHistogram delta = new LatencyHistogram();
+        long total = 0;
+        long highest = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long n = counts.get(i) - earlier.counts.get(i);
+            if (n > 0) {
+                delta.counts.set(i, n);
+                total += n;
+                highest = upperBound(i);
+            }
+        }
+        delta.count.set(total);
+        delta.sum.set(Math.max(0, sum.get() - earlier.sum.get()));
+        delta.max.set(Math.min(highest, max.get()));
+        return delta;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Verilen yüzdeliğin altında kalan en büyük değer (dilimin üst sınırı)
+     * @param percentile 0-100 arası
+     */
+    public long valueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // 2 * SUB_BUCKETS'a kadar birebir, sonrasında her ikinin kuvveti aralığı SUB_BUCKETS dilim
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
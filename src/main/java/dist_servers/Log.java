@@ -0,0 +1,314 @@
+package dist_servers;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sunucuların ortak log arayüzü.
+ *
+ * Mesajlar "{}" yer tutuculu şablon ve argümanlar olarak verilir. Seviye
+ * kapalıysa çağrı hiçbir şey yapmaz; açıksa şablon ve argümanlar önceden
+ * ayrılmış bir halka tampondaki yuvaya kopyalanır. Mesajın oluşturulması ve
+ * stdout/stderr'e yazılması tek bir arka plan thread'inde yapılır, böylece
+ * istek thread'leri System.out kilidinde sıraya girmez. INFO ve DEBUG
+ * stdout'a, WARN ve ERROR stderr'e yazılır. Son argüman Throwable ise
+ * yer tutucuya karşılık gelmiyorsa yığın izi de yazılır. Sıcak yollarda
+ * kullanılan DEBUG ve INFO için üç argümana kadar varargs dizisi
+ * oluşturmayan metodlar vardır.
+ *
+ * Seviye "-Dlog.level" (DEBUG, INFO, WARN, ERROR, OFF; varsayılan INFO),
+ * tek bir sınıf için "-Dlog.level.SınıfAdı" ile seçilir. Tampon
+ * "-Dlog.buffer.size" (varsayılan 8192) kayıttır. Tampon doluysa log çağıran
+ * thread'i bekletmez; kayıt düşürülür ve düşürülen kayıt sayısı daha sonra
+ * log'a yazılır. "-Dlog.async=false" ile kayıtlar
+ * çağıran thread'de yazılır. JVM kapanırken bekleyen kayıtlar yazılır.
+ */
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    static final String LEVEL_PROPERTY = "log.level";
+    static final String BUFFER_SIZE_PROPERTY = "log.buffer.size";
+    static final String ASYNC_PROPERTY = "log.async";
+
+    private static final int INLINE_ARGS = 4;
+    private static final Appender APPENDER = new Appender(
+        Integer.getInteger(BUFFER_SIZE_PROPERTY, 8192),
+        Boolean.parseBoolean(System.getProperty(ASYNC_PROPERTY, "true")));
+
+    private final String prefix;
+    private final Level level;
+
+    private Log(Class<?> source, String prefix) {
+        Level defaultLevel = parse(System.getProperty(LEVEL_PROPERTY), Level.INFO);
+        this.prefix = prefix;
+        this.level = parse(System.getProperty(LEVEL_PROPERTY + "." + source.getSimpleName()), defaultLevel);
+    }
+
+    /**
+     * Mesajları olduğu gibi yazan log
+     */
+    public static Log get(Class<?> source) {
+        return new Log(source, "");
+    }
+
+    /**
+     * Mesajların başına "ServerN: " ekleyen log
+     */
+    public static Log get(Class<?> source, int serverId) {
+        return new Log(source, "Server" + serverId + ": ");
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0 && level != Level.OFF;
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null, null, null, 0);
+    }
+
+    public void debug(String message, Object arg) {
+        log(Level.DEBUG, message, arg, null, null, 1);
+    }
+
+    public void debug(String message, Object arg1, Object arg2) {
+        log(Level.DEBUG, message, arg1, arg2, null, 2);
+    }
+
+    public void debug(String message, Object arg1, Object arg2, Object arg3) {
+        log(Level.DEBUG, message, arg1, arg2, arg3, 3);
+    }
+
+    public void debug(String message, Object... args) {
+        log(Level.DEBUG, message, args);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null, null, 0);
+    }
+
+    public void info(String message, Object arg) {
+        log(Level.INFO, message, arg, null, null, 1);
+    }
+
+    public void info(String message, Object arg1, Object arg2) {
+        log(Level.INFO, message, arg1, arg2, null, 2);
+    }
+
+    public void info(String message, Object arg1, Object arg2, Object arg3) {
+        log(Level.INFO, message, arg1, arg2, arg3, 3);
+    }
+
+    public void info(String message, Object... args) {
+        log(Level.INFO, message, args);
+    }
+
+    public void warn(String message, Object... args) {
+        log(Level.WARN, message, args);
+    }
+
+    public void error(String message, Object... args) {
+        log(Level.ERROR, message, args);
+    }
+
+    private void log(Level level, String message, Object arg1, Object arg2, Object arg3, int count) {
+        if (isEnabled(level)) {
+            APPENDER.append(level, prefix, message, null, arg1, arg2, arg3, count);
+        }
+    }
+
+    private void log(Level level, String message, Object[] args) {
+        if (isEnabled(level)) {
+            APPENDER.append(level, prefix, message, args, null, null, null, args.length);
+        }
+    }
+
+    private static Level parse(String value, Level defaultLevel) {
+        if (value == null) {
+            return defaultLevel;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+
+    // "{}" yer tutucularını sırayla argümanlarla değiştirir
+    private static void format(StringBuilder line, String prefix, String message, Object[] args, int count) {
+        line.append(prefix);
+        int used = 0;
+        int start = 0;
+        int index;
+        while (used < count && (index = message.indexOf("{}", start)) >= 0) {
+            line.append(message, start, index).append(args[used++]);
+            start = index + 2;
+        }
+        line.append(message, start, message.length()).append(System.lineSeparator());
+        if (used < count && args[count - 1] instanceof Throwable) {
+            StringWriter trace = new StringWriter();
+            ((Throwable) args[count - 1]).printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+    }
+
+    /**
+     * Çok üreticili, tek tüketicili halka tampon. Üretici bir sıra numarası
+     * ayırır, yuvayı doldurur ve yuvanın sıra numarasını yazarak yayınlar.
+     * Tüketici yayınlanan yuvaları sırayla yazar ve okuduğu son sıra numarasını
+     * ilerleterek yuvaları boşaltır. Yazacak kayıt kalmayınca "idle" bayrağını
+     * set edip park eder; bayrağı gören ilk üretici onu uyandırır. Böylece
+     * trafik yokken appender thread'i hiç uyanmaz.
+     */
+    private static final class Appender implements Runnable {
+        private final Slot[] slots;
+        private final int mask;
+        private final boolean async;
+        private final AtomicLong claimed = new AtomicLong();
+        private final LongAdder dropped = new LongAdder();
+        private volatile long consumed;
+        private volatile boolean idle;
+        private Thread thread;
+
+        // drain içinde, this tutulurken kullanılır
+        private final StringBuilder out = new StringBuilder();
+        private final StringBuilder err = new StringBuilder();
+
+        Appender(int size, boolean async) {
+            int capacity = Integer.highestOneBit(Math.max(size, 16) - 1) << 1;
+            this.slots = new Slot[capacity];
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new Slot(i - capacity);
+            }
+            this.mask = capacity - 1;
+            this.async = async;
+            if (async) {
+                thread = new Thread(this, "log-appender");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "log-flush"));
+        }
+
+        void append(Level level, String prefix, String message, Object[] args,
+                    Object arg1, Object arg2, Object arg3, int count) {
+            if (!async) {
+                StringBuilder line = new StringBuilder();
+                format(line, prefix, message, args != null ? args : new Object[] {arg1, arg2, arg3}, count);
+                stream(level).print(line);
+                return;
+            }
+            long sequence = claim();
+            if (sequence < 0) {
+                dropped.increment();
+                return;
+            }
+            Slot slot = slots[(int) sequence & mask];
+            slot.level = level;
+            slot.prefix = prefix;
+            slot.message = message;
+            slot.count = count;
+            if (args == null || count <= INLINE_ARGS) {
+                slot.args = slot.inline;
+                if (args == null) {
+                    slot.inline[0] = arg1;
+                    slot.inline[1] = arg2;
+                    slot.inline[2] = arg3;
+                } else {
+                    System.arraycopy(args, 0, slot.inline, 0, count);
+                }
+            } else {
+                slot.args = args;
+            }
+            slot.sequence = sequence;
+            if (idle) {
+                idle = false;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        // Yer yoksa -1
+        private long claim() {
+            while (true) {
+                long sequence = claimed.get();
+                if (sequence - consumed >= slots.length) {
+                    return -1;
+                }
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                if (drain()) {
+                    continue;
+                }
+                // Bayrak set edildikten sonra yayınlanan kayıt ya burada görülür ya da üretici uyandırır
+                idle = true;
+                if (slots[(int) consumed & mask].sequence != consumed) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            }
+        }
+
+        // Yayınlanmış tüm kayıtları yazar; kayıt yazıldıysa true
+        synchronized boolean drain() {
+            long next = consumed;
+            Slot slot;
+            while ((slot = slots[(int) next & mask]).sequence == next) {
+                format(slot.level.compareTo(Level.WARN) >= 0 ? err : out, slot.prefix, slot.message, slot.args, slot.count);
+                slot.clear();
+                next++;
+                consumed = next;
+            }
+            long lost = dropped.sumThenReset();
+            if (lost > 0) {
+                err.append("Log tamponu doldu, ").append(lost).append(" kayıt düşürüldü").append(System.lineSeparator());
+            }
+            boolean wrote = out.length() > 0 || err.length() > 0;
+            flush(System.out, out);
+            flush(System.err, err);
+            return wrote;
+        }
+
+        private static void flush(PrintStream stream, StringBuilder lines) {
+            if (lines.length() > 0) {
+                stream.print(lines);
+                stream.flush();
+                lines.setLength(0);
+            }
+        }
+
+        private static PrintStream stream(Level level) {
+            return level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+        }
+    }
+
+    private static final class Slot {
+        final Object[] inline = new Object[INLINE_ARGS];
+        volatile long sequence;
+        Level level;
+        String prefix;
+        String message;
+        Object[] args;
+        int count;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void clear() {
+            Arrays.fill(inline, null);
+            args = null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * ConcurrentHashMap tabanlı varsayılan abone deposu.
+ * Her abone için protobuf nesnesinin kendisi saklanır.
+ */
+public class MapSubscriberStore implements SubscriberStore {
+    private final ConcurrentHashMap<Integer, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    @Override
+    public Subscriber get(int id) {
+        return subscribers.get(id);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return subscribers.containsKey(id);
+    }
+
+    @Override
+    public Status put(Subscriber subscriber) {
+        Subscriber previous = subscribers.put(subscriber.getId(), subscriber);
+        return previous != null ? previous.getStatus() : null;
+    }
+
+    @Override
+    public boolean putIfAbsent(Subscriber subscriber) {
+        return subscribers.putIfAbsent(subscriber.getId(), subscriber) == null;
+    }
+
+    @Override
+    public void clear() {
+        subscribers.clear();
+    }
+
+    @Override
+    public int size() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void forEach(Consumer<Subscriber> action) {
+        subscribers.values().forEach(action);
+    }
+}
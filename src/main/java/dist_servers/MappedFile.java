@@ -0,0 +1,134 @@
+package dist_servers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bir dosyayı 1 GB'lık parçalar halinde belleğe eşler ve long konumlarla
+ * okuma/yazma sağlar. Tek bir MappedByteBuffer 2 GB ile sınırlı olduğundan
+ * daha büyük dosyalar birden fazla eşlemeye bölünür.
+ *
+ * int/long erişimleri parça sınırını aşmamalıdır (hizalı kayıtlar için
+ * doğal olarak sağlanır); byte dizisi erişimleri sınırı aşabilir.
+ * Thread-safe değildir, çağıran taraf senkronize etmelidir.
+ */
+final class MappedFile implements Closeable {
+    static final int CHUNK_SIZE = 1 << 30;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private long size;
+
+    MappedFile(Path path, long minSize) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = 0;
+        ensureCapacity(Math.max(minSize, channel.size()));
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Dosyayı en az verilen boyuta büyütür ve yeni alanı eşler
+     */
+    void ensureCapacity(long newSize) throws IOException {
+        if (newSize <= size) {
+            return;
+        }
+        // Son parça kısmi eşlendiyse yeniden eşlenecek
+        int firstChunk = (int) (size / CHUNK_SIZE);
+        while (chunks.size() > firstChunk) {
+            chunks.remove(chunks.size() - 1);
+        }
+        for (long offset = (long) firstChunk * CHUNK_SIZE; offset < newSize; offset += CHUNK_SIZE) {
+            long length = Math.min(CHUNK_SIZE, newSize - offset);
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, offset, length));
+        }
+        size = newSize;
+    }
+
+    int getInt(long position) {
+        return chunk(position).getInt(offset(position));
+    }
+
+    void putInt(long position, int value) {
+        chunk(position).putInt(offset(position), value);
+    }
+
+    long getLong(long position) {
+        return chunk(position).getLong(offset(position));
+    }
+
+    void putLong(long position, long value) {
+        chunk(position).putLong(offset(position), value);
+    }
+
+    byte get(long position) {
+        return chunk(position).get(offset(position));
+    }
+
+    void put(long position, byte value) {
+        chunk(position).put(offset(position), value);
+    }
+
+    void getBytes(long position, byte[] target) {
+        int done = 0;
+        while (done < target.length) {
+            ByteBuffer view = chunk(position + done).duplicate();
+            view.position(offset(position + done));
+            int length = Math.min(target.length - done, view.remaining());
+            view.get(target, done, length);
+            done += length;
+        }
+    }
+
+    void putBytes(long position, byte[] source) {
+        int done = 0;
+        while (done < source.length) {
+            ByteBuffer view = chunk(position + done).duplicate();
+            view.position(offset(position + done));
+            int length = Math.min(source.length - done, view.remaining());
+            view.put(source, done, length);
+            done += length;
+        }
+    }
+
+    /**
+     * Eşlenmiş sayfaları diske yazar
+     */
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        chunks.clear();
+        channel.close();
+    }
+
+    private MappedByteBuffer chunk(long position) {
+        return chunks.get((int) (position / CHUNK_SIZE));
+    }
+
+    private static int offset(long position) {
+        return (int) (position % CHUNK_SIZE);
+    }
+}
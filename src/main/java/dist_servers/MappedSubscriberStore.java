@@ -0,0 +1,437 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Abone kayıtlarını heap dışında, belleğe eşlenmiş dosyalarda tutan depo.
+ *
+ * subscribers.idx: sabit boyutlu kayıtlardan oluşan open addressing tablosu.
+ * Her kayıt id, status, start_date, last_accessed ve isim konumunu tutar.
+ * names.dat: uzunluk önekli UTF-8 isimlerin eklendiği değişken boyutlu alan.
+ * Her isim kaydı 4 byte sınırında başlar, böylece uzunluk öneki MappedFile
+ * parça sınırını aşmaz.
+ *
+ * Veriler heap'te tutulmadığı için abone sayısı GC duraklamalarını etkilemez
+ * ve sunucu yeniden başladığında dosyalar olduğu gibi yeniden eşlenir.
+ * Yazmalar tek bir yazma kilidiyle, okumalar paylaşımlı okuma kilidiyle yapılır.
+ * forEach kayıtları sayfa sayfa okuma kilidi altında kopyalar ve geri çağrıyı
+ * kilit dışında çalıştırır. Gezinme sürerken tablo büyütülmez; büyütme tablo
+ * 7/8 dolana kadar ertelenir, ancak o noktada yazan thread gezinmenin bitmesini
+ * bekler.
+ *
+ * Yeni kayıtta isim baytları kayıt dolu işaretlenmeden önce yazılır; force()
+ * önce names.dat'ı, sonra tabloyu diske yazar, böylece diske inmiş bir tablo
+ * görüntüsü diske inmemiş bir isme işaret etmez. İki force arasında işletim
+ * sistemi sayfaları herhangi bir sırayla yazabileceğinden açılışta tüm tablo
+ * taranır: sayaç dolu kayıtlardan yeniden hesaplanır, isim alanının sonu en
+ * uzak isim kaydına göre düzeltilir ve sınır dışına işaret eden isimler boş
+ * isimle değiştirilir (bu kayıtlar snapshot sonrası olduğundan WAL ile
+ * yeniden yazılır).
+ *
+ * names.dat yalnızca büyür: ismi değişen aboneler için eski isim alanı geri
+ * kazanılmaz ve dosya hiçbir zaman küçülmez. clear() alanı baştan kullanır
+ * ama dosya boyutunu korur. Alanı geri kazanmak için dosyalar silinip durum
+ * snapshot ve WAL'dan yeniden yüklenmelidir.
+ */
+public class MappedSubscriberStore implements SubscriberStore {
+    private static final int MAGIC = 0x48535542; // "HSUB"
+    private static final int VERSION = 1;
+
+    // subscribers.idx başlığı
+    private static final int HEADER_SIZE = 64;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int NAMES_END_OFFSET = 16;
+
+    // Kayıt düzeni (32 byte)
+    private static final int RECORD_SIZE = 32;
+    private static final int ID_OFFSET = 0;
+    private static final int USED_OFFSET = 4;
+    private static final int STATUS_OFFSET = 5;
+    private static final int START_DATE_OFFSET = 8;
+    private static final int LAST_ACCESSED_OFFSET = 16;
+    private static final int NAME_OFFSET = 24;
+
+    private static final int NAMES_HEADER_SIZE = 8;
+    private static final int NAMES_VERSION = 1;
+    private static final int NAME_ALIGNMENT = 4;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int PAGE_SIZE = 4096;
+    private static final long INITIAL_NAMES_SIZE = 1 << 20;
+
+    private final Path indexPath;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // forEach okuma, resize yazma tarafını tutar; lock'tan önce alınır
+    private final ReentrantReadWriteLock resizeLock = new ReentrantReadWriteLock();
+    private MappedFile index;
+    private final MappedFile names;
+    private int capacity;
+    private int count;
+    private long namesEnd;
+
+    public MappedSubscriberStore(Path directory) {
+        this.indexPath = directory.resolve("subscribers.idx");
+        try {
+            boolean exists = Files.exists(indexPath) && Files.size(indexPath) >= HEADER_SIZE;
+            this.names = new MappedFile(directory.resolve("names.dat"), INITIAL_NAMES_SIZE);
+            if (exists) {
+                this.index = new MappedFile(indexPath, HEADER_SIZE);
+                if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+                    throw new IOException("Geçersiz abone dosyası: " + indexPath);
+                }
+                if (names.getInt(0) != MAGIC || names.getInt(4) != NAMES_VERSION) {
+                    throw new IOException("Geçersiz isim dosyası: " + names.path());
+                }
+                this.capacity = index.getInt(CAPACITY_OFFSET);
+                if (capacity < 16 || Integer.bitCount(capacity) != 1
+                        || HEADER_SIZE + (long) capacity * RECORD_SIZE > index.size()) {
+                    throw new IOException("Geçersiz abone tablosu kapasitesi " + capacity + ": " + indexPath);
+                }
+                this.namesEnd = Math.max(NAMES_HEADER_SIZE, index.getLong(NAMES_END_OFFSET));
+                rebuild();
+            } else {
+                // Kapasite ikinin kuvveti olmalı
+                int requested = Integer.getInteger("subscriber.store.capacity", INITIAL_CAPACITY);
+                this.capacity = Integer.highestOneBit(Math.max(16, requested - 1)) << 1;
+                this.index = createIndex(indexPath, capacity);
+                this.count = 0;
+                this.namesEnd = NAMES_HEADER_SIZE;
+                names.putInt(0, MAGIC);
+                names.putInt(4, NAMES_VERSION);
+                writeHeader();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Abone dosyaları açılamadı: " + directory, e);
+        }
+    }
+
+    @Override
+    public Subscriber get(int id) {
+        lock.readLock().lock();
+        try {
+            long record = find(index, capacity, id);
+            return record >= 0 ? materialize(record) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        lock.readLock().lock();
+        try {
+            return find(index, capacity, id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Status put(Subscriber subscriber) {
+        return put(subscriber, false);
+    }
+
+    @Override
+    public boolean putIfAbsent(Subscriber subscriber) {
+        return put(subscriber, true) == null;
+    }
+
+    private Status put(Subscriber subscriber, boolean onlyIfAbsent) {
+        boolean awaitIteration = false;
+        while (true) {
+            if (awaitIteration) {
+                resizeLock.writeLock().lock();
+            }
+            lock.writeLock().lock();
+            try {
+                long record = find(index, capacity, subscriber.getId());
+                if (record >= 0) {
+                    Status previous = SubscriberStore.statusOf(index.get(record + STATUS_OFFSET));
+                    if (!onlyIfAbsent) {
+                        // İsim değişmediyse mevcut isim kaydı kullanılır; kayıt nesnesi oluşturulmaz
+                        byte[] name = subscriber.getNameSurname().getBytes(StandardCharsets.UTF_8);
+                        long nameOffset = index.getLong(record + NAME_OFFSET);
+                        if (!nameEquals(nameOffset, name)) {
+                            nameOffset = appendName(name);
+                        }
+                        writeRecord(index, record, subscriber, nameOffset);
+                        index.putLong(NAMES_END_OFFSET, namesEnd);
+                    }
+                    return previous;
+                }
+
+                if ((count + 1) * 4L > capacity * 3L && !tryResize() && (count + 1) * 8L > capacity * 7L) {
+                    // Gezinme sürüyor ve tablo çok dolu: gezinme bitince tekrar dene
+                    awaitIteration = true;
+                    continue;
+                }
+                long nameOffset = appendName(subscriber.getNameSurname());
+                writeRecord(index, freeRecord(index, capacity, subscriber.getId()), subscriber, nameOffset);
+                count++;
+                writeHeader();
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Abone kaydı yazılamadı", e);
+            } finally {
+                lock.writeLock().unlock();
+                if (resizeLock.isWriteLockedByCurrentThread()) {
+                    resizeLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // Gezinme yoksa tabloyu büyütür; yazma kilidi tutulurken çağrılır
+    private boolean tryResize() throws IOException {
+        if (!resizeLock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            resize();
+            return true;
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        resizeLock.writeLock().lock();
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < capacity; slot++) {
+                index.put(recordPosition(slot) + USED_OFFSET, (byte) 0);
+            }
+            count = 0;
+            namesEnd = NAMES_HEADER_SIZE;
+            writeHeader();
+        } finally {
+            lock.writeLock().unlock();
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<Subscriber> action) {
+        resizeLock.readLock().lock();
+        try {
+            List<Subscriber> page = new ArrayList<>(PAGE_SIZE);
+            for (int start = 0; ; start += PAGE_SIZE) {
+                lock.readLock().lock();
+                try {
+                    if (start >= capacity) {
+                        return;
+                    }
+                    for (int slot = start, end = Math.min(capacity, start + PAGE_SIZE); slot < end; slot++) {
+                        long record = recordPosition(slot);
+                        if (index.get(record + USED_OFFSET) != 0) {
+                            page.add(materialize(record));
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                page.forEach(action);
+                page.clear();
+            }
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Eşlenmiş sayfaları diske yazar. İsimler tablodan önce yazılır.
+     */
+    public void force() {
+        lock.writeLock().lock();
+        try {
+            names.force();
+            index.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Çökme sonrası tutarsızlıkları düzeltir: sayaç ve isim sonu kayıtlardan hesaplanır
+    private void rebuild() throws IOException {
+        List<Long> broken = new ArrayList<>();
+        int used = 0;
+        long end = Math.min(namesEnd, names.size());
+        for (int slot = 0; slot < capacity; slot++) {
+            long record = recordPosition(slot);
+            if (index.get(record + USED_OFFSET) == 0) {
+                continue;
+            }
+            used++;
+            long nameOffset = index.getLong(record + NAME_OFFSET);
+            long nameEnd = nameEnd(nameOffset);
+            if (nameEnd < 0) {
+                broken.add(record);
+            } else {
+                end = Math.max(end, nameEnd);
+            }
+        }
+        namesEnd = end;
+        count = used;
+        if (!broken.isEmpty()) {
+            long empty = appendName("");
+            for (long record : broken) {
+                index.putLong(record + NAME_OFFSET, empty);
+            }
+        }
+        writeHeader();
+    }
+
+    // İsim kaydı dosya içindeyse hizalanmış bitiş konumu, değilse -1
+    private long nameEnd(long nameOffset) {
+        if (nameOffset < NAMES_HEADER_SIZE || nameOffset % NAME_ALIGNMENT != 0 || nameOffset + 4 > names.size()) {
+            return -1;
+        }
+        int length = names.getInt(nameOffset);
+        long end = (nameOffset + 4 + length + NAME_ALIGNMENT - 1) & -NAME_ALIGNMENT;
+        return length >= 0 && end <= names.size() ? end : -1;
+    }
+
+    private static MappedFile createIndex(Path path, int capacity) throws IOException {
+        Files.deleteIfExists(path);
+        MappedFile file = new MappedFile(path, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        file.putInt(0, MAGIC);
+        file.putInt(4, VERSION);
+        file.putInt(CAPACITY_OFFSET, capacity);
+        return file;
+    }
+
+    private void writeHeader() {
+        index.putInt(COUNT_OFFSET, count);
+        index.putLong(NAMES_END_OFFSET, namesEnd);
+    }
+
+    private static long recordPosition(int slot) {
+        return HEADER_SIZE + (long) slot * RECORD_SIZE;
+    }
+
+    private static long find(MappedFile file, int capacity, int id) {
+        int mask = capacity - 1;
+        for (int slot = IntSubscriberStore.hash(id) & mask; ; slot = (slot + 1) & mask) {
+            long record = recordPosition(slot);
+            if (file.get(record + USED_OFFSET) == 0) {
+                return -1;
+            }
+            if (file.getInt(record + ID_OFFSET) == id) {
+                return record;
+            }
+        }
+    }
+
+    private static long freeRecord(MappedFile file, int capacity, int id) {
+        int mask = capacity - 1;
+        int slot = IntSubscriberStore.hash(id) & mask;
+        while (file.get(recordPosition(slot) + USED_OFFSET) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return recordPosition(slot);
+    }
+
+    private static void writeRecord(MappedFile file, long record, Subscriber subscriber, long nameOffset) {
+        file.putInt(record + ID_OFFSET, subscriber.getId());
+        file.put(record + STATUS_OFFSET, (byte) subscriber.getStatusValue());
+        file.putLong(record + START_DATE_OFFSET, subscriber.getStartDate());
+        file.putLong(record + LAST_ACCESSED_OFFSET, subscriber.getLastAccessed());
+        file.putLong(record + NAME_OFFSET, nameOffset);
+        // Kayıt ancak tüm alanlar yazıldıktan sonra dolu işaretlenir
+        file.put(record + USED_OFFSET, (byte) 1);
+    }
+
+    private Subscriber materialize(long record) {
+        long nameOffset = index.getLong(record + NAME_OFFSET);
+        byte[] name = new byte[names.getInt(nameOffset)];
+        names.getBytes(nameOffset + 4, name);
+        return Subscriber.newBuilder()
+            .setId(index.getInt(record + ID_OFFSET))
+            .setStatusValue(index.get(record + STATUS_OFFSET))
+            .setNameSurname(new String(name, StandardCharsets.UTF_8))
+            .setStartDate(index.getLong(record + START_DATE_OFFSET))
+            .setLastAccessed(index.getLong(record + LAST_ACCESSED_OFFSET))
+            .build();
+    }
+
+    private boolean nameEquals(long nameOffset, byte[] name) {
+        if (names.getInt(nameOffset) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (names.get(nameOffset + 4 + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long appendName(String name) throws IOException {
+        return appendName(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Kayıt sonunu 4 byte'a hizalar; sonraki kaydın uzunluk öneki parça sınırını aşamaz
+    private long appendName(byte[] bytes) throws IOException {
+        long required = (namesEnd + 4 + bytes.length + NAME_ALIGNMENT - 1) & -NAME_ALIGNMENT;
+        if (required > names.size()) {
+            long grown = names.size() < MappedFile.CHUNK_SIZE
+                ? names.size() * 2
+                : names.size() + MappedFile.CHUNK_SIZE;
+            names.ensureCapacity(Math.max(grown, required));
+        }
+        long offset = namesEnd;
+        names.putInt(offset, bytes.length);
+        names.putBytes(offset + 4, bytes);
+        namesEnd = required;
+        return offset;
+    }
+
+    // Tabloyu iki katı kapasiteli yeni bir dosyaya taşır ve atomik olarak yer değiştirir
+    private void resize() throws IOException {
+        int newCapacity = capacity * 2;
+        Path tmpPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        MappedFile resized = createIndex(tmpPath, newCapacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            long record = recordPosition(slot);
+            if (index.get(record + USED_OFFSET) == 0) {
+                continue;
+            }
+            long target = freeRecord(resized, newCapacity, index.getInt(record + ID_OFFSET));
+            for (int i = 0; i < RECORD_SIZE; i += 8) {
+                resized.putLong(target + i, index.getLong(record + i));
+            }
+        }
+        resized.putInt(COUNT_OFFSET, count);
+        resized.putLong(NAMES_END_OFFSET, namesEnd);
+        names.force();
+        resized.close();
+        index.close();
+
+        Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = new MappedFile(indexPath, HEADER_SIZE);
+        capacity = newCapacity;
+    }
+}
@@ -0,0 +1,121 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Abone deposunun anti-entropy için özet ağacı.
+ *
+ * Yapraklar, hash halkasının bölümlerinin RANGES_PER_PARTITION eşit ID
+ * aralığıdır. Bir aralığın özeti içindeki kayıtların (id, status,
+ * start_date, last_accessed, isim) hash'lerinin toplamıdır; toplam sıradan
+ * bağımsız olduğu için ağaç deponun tek bir gezinmesiyle kurulur.
+ * Bölüm özeti aralık özetlerinden, kök ise seçilen bölümlerin özetlerinden
+ * sırayla türetilir. Kurulduktan sonra değişmez.
+ */
+final class MerkleTree {
+    static final int RANGES_PER_PARTITION = 16;
+
+    private final HashRing ring;
+    private final int rangeWidth;
+    private final TreeMap<Long, long[]> partitions = new TreeMap<>();
+
+    private MerkleTree(HashRing ring) {
+        this.ring = ring;
+        this.rangeWidth = (ring.getPartitionSize() + RANGES_PER_PARTITION - 1) / RANGES_PER_PARTITION;
+    }
+
+    /**
+     * Deponun o anki içeriğinden ağacı kurar. Gezinme sırasında yapılan
+     * yazmalar ağaca yansımayabilir; bir sonraki turda düzelir.
+     */
+    static MerkleTree build(SubscriberStore store, HashRing ring) {
+        MerkleTree tree = new MerkleTree(ring);
+        store.forEach(subscriber -> {
+            long[] ranges = tree.partitions.computeIfAbsent(
+                ring.partitionOf(subscriber.getId()), partition -> new long[RANGES_PER_PARTITION]);
+            ranges[tree.rangeOf(subscriber.getId())] += hash(subscriber);
+        });
+        return tree;
+    }
+
+    /**
+     * ID'nin bölümü içindeki aralığı
+     */
+    int rangeOf(int id) {
+        return (int) ((Integer.toUnsignedLong(id) % ring.getPartitionSize()) / rangeWidth);
+    }
+
+    /**
+     * Aralığın ilk ID'si
+     */
+    long rangeStart(long partition, int range) {
+        return partition * ring.getPartitionSize() + (long) range * rangeWidth;
+    }
+
+    /**
+     * Aralıktan sonraki ilk ID (bölüm sınırını aşmaz)
+     */
+    long rangeEnd(long partition, int range) {
+        return Math.min(rangeStart(partition, range) + rangeWidth, (partition + 1) * ring.getPartitionSize());
+    }
+
+    /**
+     * Seçilen bölümlerin kök özeti
+     */
+    long root(LongPredicate include) {
+        long root = 0;
+        for (Map.Entry<Long, Long> partition : partitionHashes(include).entrySet()) {
+            root = HashRing.mix(root ^ partition.getKey());
+            root = HashRing.mix(root ^ partition.getValue());
+        }
+        return root;
+    }
+
+    /**
+     * Seçilen ve kayıt içeren bölümlerin özetleri, bölüm sırasıyla
+     */
+    Map<Long, Long> partitionHashes(LongPredicate include) {
+        Map<Long, Long> hashes = new TreeMap<>();
+        for (Map.Entry<Long, long[]> partition : partitions.entrySet()) {
+            if (include.test(partition.getKey())) {
+                hashes.put(partition.getKey(), partitionHash(partition.getValue()));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Bölümün aralık özetleri; bölümde kayıt yoksa tümü 0
+     */
+    long[] rangeHashes(long partition) {
+        long[] ranges = partitions.get(partition);
+        return ranges != null ? ranges.clone() : new long[RANGES_PER_PARTITION];
+    }
+
+    private static long partitionHash(long[] ranges) {
+        long hash = 0;
+        for (long range : ranges) {
+            hash = HashRing.mix(hash ^ range);
+        }
+        return hash;
+    }
+
+    /**
+     * Kaydın özeti; iki düğümdeki kayıtlar aynıysa aynıdır
+     */
+    static long hash(Subscriber subscriber) {
+        long hash = HashRing.mix(subscriber.getId());
+        hash = HashRing.mix(hash ^ subscriber.getStatusValue());
+        hash = HashRing.mix(hash ^ subscriber.getStartDate());
+        hash = HashRing.mix(hash ^ subscriber.getLastAccessed());
+        for (byte b : subscriber.getNameSurname().getBytes(StandardCharsets.UTF_8)) {
+            hash = hash * 31 + b;
+        }
+        return HashRing.mix(hash);
+    }
+}
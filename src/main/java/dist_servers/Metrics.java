@@ -0,0 +1,159 @@
+package dist_servers;
+
+import com.hasup.proto.MetricsProto.Counter;
+import com.hasup.proto.MetricsProto.MetricsSnapshot;
+import com.hasup.proto.MetricsProto.Timer;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sunucu içi gecikme ve sayaç metrikleri.
+ *
+ * Zamanlayıcılar kilitsiz LatencyHistogram, sayaçlar LongAdder'dır; kayıt
+ * yolunda log yazılmaz, yalnızca birkaç atomik işlem yapılır. Metrikler
+ * adlarıyla ilk kullanımda oluşturulur. Admin portundan mesaj tipi 4 ile
+ * başlangıçtan bu yana toplanan değerlerin anlık görüntüsü alınabilir.
+ * "-Dmetrics.log.interval.seconds" (varsayılan 30, 0 kapatır) aralığıyla
+ * yalnızca o dönemin istek sayıları ve p50/p99/p999 gecikmeleri log'a yazılır.
+ */
+public final class Metrics implements Closeable {
+    static final String LOG_INTERVAL_PROPERTY = "metrics.log.interval.seconds";
+
+    private static final Metrics GLOBAL = new Metrics(0);
+
+    private final int serverId;
+    private final Log log;
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporter;
+
+    // Son özetteki değerler; dönem farkları bunlara göre hesaplanır. report thread'inde kullanılır.
+    private final Map<String, LatencyHistogram> reportedTimers = new HashMap<>();
+    private final Map<String, Long> reportedCounters = new HashMap<>();
+    private long reportedAt = System.nanoTime();
+
+    public Metrics(int serverId) {
+        this.serverId = serverId;
+        this.log = Log.get(Metrics.class, serverId);
+    }
+
+    /**
+     * Kendi metriklerini tutmayan sunucuların paylaştığı kayıt
+     */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Verilen adın gecikme histogramı (nanosaniye)
+     */
+    public LatencyHistogram timer(String name) {
+        LatencyHistogram timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Verilen zamandan (System.nanoTime) bu yana geçen süreyi kaydeder
+     */
+    public void recordSince(String name, long startNanos) {
+        timer(name).record(System.nanoTime() - startNanos);
+    }
+
+    public LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Başlangıçtan bu yana toplanan tüm metrikler, adlarına göre sıralı
+     */
+    public MetricsSnapshot snapshot() {
+        MetricsSnapshot.Builder snapshot = MetricsSnapshot.newBuilder()
+            .setServerId(serverId)
+            .setTimestamp(System.currentTimeMillis());
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram timer = entry.getValue().copy();
+            snapshot.addTimers(Timer.newBuilder()
+                .setName(entry.getKey())
+                .setCount(timer.getCount())
+                .setMeanMs(timer.getMean() / 1e6)
+                .setP50Ms(timer.valueAtPercentile(50) / 1e6)
+                .setP90Ms(timer.valueAtPercentile(90) / 1e6)
+                .setP99Ms(timer.valueAtPercentile(99) / 1e6)
+                .setP999Ms(timer.valueAtPercentile(99.9) / 1e6)
+                .setMaxMs(timer.getMax() / 1e6));
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            snapshot.addCounters(Counter.newBuilder()
+                .setName(entry.getKey())
+                .setValue(entry.getValue().sum()));
+        }
+        return snapshot.build();
+    }
+
+    /**
+     * Periyodik log özetini başlatır; birden fazla çağrılması sorun değildir
+     */
+    public synchronized void start() {
+        long interval = Long.getLong(LOG_INTERVAL_PROPERTY, 30);
+        if (reporter != null || interval <= 0) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Server" + serverId + "-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+    }
+
+    // Son özetten bu yana etkinlik olan metrikleri yazar
+    private void report() {
+        long now = System.nanoTime();
+        double seconds = Math.max((now - reportedAt) / 1e9, 1e-3);
+        reportedAt = now;
+
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram current = entry.getValue().copy();
+            LatencyHistogram previous = reportedTimers.put(entry.getKey(), current);
+            LatencyHistogram period = previous != null ? current.since(previous) : current;
+            if (period.getCount() == 0) {
+                continue;
+            }
+            summary.append(String.format(Locale.ROOT, "%n  %-28s n=%d (%.0f/sn) p50=%.3f p99=%.3f p999=%.3f max=%.3f ms",
+                entry.getKey(), period.getCount(), period.getCount() / seconds,
+                period.valueAtPercentile(50) / 1e6, period.valueAtPercentile(99) / 1e6,
+                period.valueAtPercentile(99.9) / 1e6, period.getMax() / 1e6));
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            long value = entry.getValue().sum();
+            Long previous = reportedCounters.put(entry.getKey(), value);
+            long delta = value - (previous != null ? previous : 0);
+            if (delta == 0) {
+                continue;
+            }
+            summary.append(String.format(Locale.ROOT, "%n  %-28s +%d (%.0f/sn), toplam %d",
+                entry.getKey(), delta, delta / seconds, value));
+        }
+        if (summary.length() > 0) {
+            log.info("Son {} sn metrikleri:{}", Math.round(seconds), summary);
+        }
+    }
+}
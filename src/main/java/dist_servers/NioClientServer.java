@@ -0,0 +1,354 @@
+package dist_servers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * CLIENT_PORT için java.nio Selector tabanlı, bloklamayan client ön yüzü.
+ * Her bağlantı için thread açmak yerine tek bir selector thread'i tüm
+ * soketleri okur/yazar; 4 byte uzunluk önekli Subscriber (ve SubscriberBatch)
+ * çerçevelerini çözer ve istekleri sınırlı bir worker havuzunda
+ * ServerInterface'e iletir.
+ *
+ * Bir bağlantıda yanıtı yazılmamış istek sayısı ClientHandler.MAX_IN_FLIGHT'a
+ * ulaşınca o bağlantının OP_READ ilgisi kaldırılır; yanıtlar yazıldıkça geri
+ * açılır. Soket kapatma ve ilgi değişiklikleri yalnızca selector thread'inde
+ * yapılır; worker'lar bunları kuyruğa ekleyip selector'ı uyandırır.
+ *
+ * "-Dclient.mode=nio" ile seçilir, varsayılan bloklayan ClientHandler yoludur.
+ */
+public class NioClientServer implements Runnable {
+    static final String MODE_PROPERTY = "client.mode";
+    static final int MAX_FRAME_SIZE = 1024 * 1024;
+    static final int MAX_BATCH_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int WORKER_QUEUE_SIZE = 10_000;
+    private static final int REJECT_QUEUE_SIZE = 1024;
+
+    private final int serverId;
+    private final Log log;
+    private final int port;
+    private final ServerInterface server;
+    private final BooleanSupplier running;
+    private final ThreadPoolExecutor workers;
+    // Worker kuyruğu doluyken red yanıtlarını (çerçeve çözümü dahil) selector thread'i dışında üretir
+    private final ThreadPoolExecutor rejecter;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Queue<SelectionKey> pendingCloses = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+
+    public NioClientServer(int serverId, int port, ServerInterface server, BooleanSupplier running) {
+        this.serverId = serverId;
+        this.log = Log.get(NioClientServer.class, serverId);
+        this.port = port;
+        this.server = server;
+        this.running = running;
+
+        int workerCount = Integer.getInteger("client.workers",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount,
+            60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(WORKER_QUEUE_SIZE),
+            runnable -> {
+                Thread thread = new Thread(runnable, "Server" + serverId + "-client-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.rejecter = new ThreadPoolExecutor(1, 1,
+            60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(REJECT_QUEUE_SIZE),
+            runnable -> {
+                Thread thread = new Thread(runnable, "Server" + serverId + "-client-rejecter");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * client.mode sistem özelliği "nio" ise true döner
+     */
+    public static boolean isEnabled() {
+        return "nio".equalsIgnoreCase(System.getProperty(MODE_PROPERTY, "blocking"));
+    }
+
+    @Override
+    public void run() {
+        try (Selector selector = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.selector = selector;
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            log.info("Client bağlantıları için dinleniyor (nio): {}", port);
+
+            while (running.getAsBoolean()) {
+                selector.select(500);
+                registerPendingWrites();
+                closePending();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isAcceptable()) {
+                            accept(serverChannel);
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                    } catch (IOException e) {
+                        log.warn("Client bağlantı hatası: {}", e.getMessage());
+                        closeKey(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Client socket hatası: {}", e.getMessage());
+        } finally {
+            workers.shutdown();
+            rejecter.shutdown();
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+            key.attach(new Connection(channel, key, server.isClusterMember(remote.getAddress())));
+        }
+    }
+
+    // Worker'ların ürettiği yanıtlar için OP_WRITE ilgisini selector thread'inde aç
+    private void registerPendingWrites() {
+        Connection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            SelectionKey key = connection.key;
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    // Worker thread'lerinden gelen kapatma istekleri
+    private void requestClose(SelectionKey key) {
+        pendingCloses.add(key);
+        selector.wakeup();
+    }
+
+    private void closePending() {
+        SelectionKey key;
+        while ((key = pendingCloses.poll()) != null) {
+            closeKey(key);
+        }
+    }
+
+    // Yalnızca selector thread'inde çağrılır
+    private void closeKey(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.warn("Socket kapatma hatası: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Tek bir client bağlantısının okuma tamponu, işlenmeyi bekleyen istekleri
+     * ve gönderilmeyi bekleyen yanıtları. Aynı bağlantıdaki istekler sırayla
+     * işlenir, böylece yanıtlar istek sırasıyla yazılır.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        // Yalnızca küme üyelerinden gelen FORWARDED_FRAME bitine güvenilir
+        private final boolean fromMember;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ArrayDeque<Frame> requests = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> responses = new ArrayDeque<>();
+        private final OrderedResponses ordered = new OrderedResponses(this::respond, this::close, Runnable::run);
+        private boolean processing;
+        // Selector thread'ine ait: okunup yanıtı henüz yazılmamış istek sayısı
+        private int inFlight;
+        private boolean paused;
+
+        Connection(SocketChannel channel, SelectionKey key, boolean fromMember) {
+            this.channel = channel;
+            this.key = key;
+            this.fromMember = fromMember;
+        }
+
+        void read() throws IOException {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                closeKey(key);
+                return;
+            }
+            parseFrames();
+        }
+
+        // Tampondaki tam çerçeveleri sınır dolana kadar işler; sınırda okumayı durdurur
+        private void parseFrames() throws IOException {
+            readBuffer.flip();
+            int pendingLength = -1;
+            while (!paused && readBuffer.remaining() >= 4) {
+                int header = readBuffer.getInt(readBuffer.position());
+                int length = ClientHandler.frameLength(header);
+                if (readBuffer.remaining() < 4 + length) {
+                    pendingLength = length;
+                    break;
+                }
+                header = ClientHandler.acceptedHeader(server, readBuffer.getInt(), fromMember);
+                byte[] data = new byte[length];
+                readBuffer.get(data);
+                enqueue(new Frame(header, data));
+                if (!key.isValid()) {
+                    return;
+                }
+                if (++inFlight >= ClientHandler.MAX_IN_FLIGHT) {
+                    paused = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    server.getMetrics().counter("client.paused").increment();
+                }
+            }
+            readBuffer.compact();
+
+            // Yarım kalan çerçeve tampona sığmıyorsa tamponu büyüt
+            if (pendingLength + 4 > readBuffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(readBuffer.capacity() * 2, pendingLength + 4));
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+        }
+
+        private void enqueue(Frame request) {
+            synchronized (this) {
+                requests.add(request);
+                if (processing) {
+                    return;
+                }
+                processing = true;
+            }
+            try {
+                workers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Worker kuyruğu dolu: istekleri reddet. Büyük batch çerçevelerinin çözümü
+                // selector thread'ini bloklamasın diye red yanıtları ayrı thread'de üretilir.
+                log.warn("Worker kuyruğu dolu, istek reddedildi");
+                try {
+                    rejecter.execute(this::rejectPending);
+                } catch (RejectedExecutionException overloaded) {
+                    // Red kuyruğu da dolu: yanıt üretmeden bağlantıyı kapat
+                    log.warn("Red kuyruğu dolu, client bağlantısı kapatılıyor");
+                    server.getMetrics().counter("client.rejected").increment();
+                    closeKey(key);
+                }
+            }
+        }
+
+        private void drain() {
+            process(false);
+        }
+
+        private void rejectPending() {
+            process(true);
+        }
+
+        private void process(boolean reject) {
+            while (true) {
+                Frame request;
+                synchronized (this) {
+                    request = requests.poll();
+                    if (request == null) {
+                        processing = false;
+                        return;
+                    }
+                }
+                if (reject) {
+                    server.getMetrics().counter("client.rejected").increment();
+                }
+                try {
+                    // Worker yanıtı beklemez; yanıt hazır olunca istek sırasıyla yazılır
+                    ordered.add(reject
+                        ? CompletableFuture.completedFuture(ClientHandler.rejectFrame(request.header, request.data))
+                        : ClientHandler.handleFrame(server, request.header, request.data));
+                } catch (IOException e) {
+                    log.warn("Client isteği çözülemedi: {}", e.getMessage());
+                    requestClose(key);
+                }
+            }
+        }
+
+        private void respond(List<byte[]> frames) {
+            synchronized (this) {
+                for (byte[] frame : frames) {
+                    responses.add(ByteBuffer.wrap(frame));
+                }
+            }
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        private void close() {
+            requestClose(key);
+        }
+
+        void write() throws IOException {
+            int written = 0;
+            boolean drained;
+            synchronized (this) {
+                while (!responses.isEmpty()) {
+                    ByteBuffer frame = responses.peek();
+                    channel.write(frame);
+                    if (frame.hasRemaining()) {
+                        break;
+                    }
+                    responses.poll();
+                    written++;
+                }
+                drained = responses.isEmpty();
+            }
+            inFlight -= written;
+            if (paused && inFlight < ClientHandler.MAX_IN_FLIGHT) {
+                // Tamponda bekleyen çerçeveleri işle; sınır yine dolmazsa okumaya devam et
+                paused = false;
+                parseFrames();
+                if (!key.isValid()) {
+                    return;
+                }
+            }
+            int ops = paused ? 0 : SelectionKey.OP_READ;
+            key.interestOps(drained ? ops : ops | SelectionKey.OP_WRITE);
+        }
+    }
+
+    // Çözülmüş ama henüz işlenmemiş istek çerçevesi
+    private static final class Frame {
+        final int header;
+        final byte[] data;
+
+        Frame(int header, byte[] data) {
+            this.header = header;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package dist_servers;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bir client bağlantısındaki isteklerin yanıtlarını, hangi sırayla
+ * tamamlanırlarsa tamamlansınlar, istek sırasıyla teslim eder.
+ *
+ * İstek işleyen thread yanıtın hazır olmasını beklemez; yanıt future'ı
+ * tamamlandığında baştan itibaren hazır olan tüm yanıtlar gönderim listesine
+ * alınır. Future'ı tamamlayan thread (WAL yazıcısı, peer onay okuyucusu vb.)
+ * yalnızca bu listeyi doldurur, soket I/O'su yapmaz. Liste verilen executor'da
+ * tek bir gönderici tarafından, kilit dışında Sink'e verilir; aynı anda en
+ * fazla bir gönderici çalıştığı için yanıtlar asla karışmaz. Yavaş bir client
+ * yalnızca kendi göndericisini bekletir.
+ */
+final class OrderedResponses {
+    interface Sink {
+        void send(List<byte[]> frames) throws IOException;
+    }
+
+    private static final Log LOG = Log.get(OrderedResponses.class);
+
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private final Sink sink;
+    private final Runnable onError;
+    private final Executor executor;
+    private List<byte[]> outgoing = new ArrayList<>();
+    private boolean sending;
+
+    /**
+     * @param sink Hazır yanıt çerçevelerini gönderen fonksiyon
+     * @param onError Gönderim başarısız olduğunda çağrılır (örn. bağlantıyı kapatır)
+     * @param executor Sink'in çağrılacağı executor; Sink bloklamıyorsa Runnable::run olabilir
+     */
+    OrderedResponses(Sink sink, Runnable onError, Executor executor) {
+        this.sink = sink;
+        this.onError = onError;
+        this.executor = executor;
+    }
+
+    /**
+     * Sıradaki isteğin yanıtını ekler. Future hata ile tamamlanmamalıdır.
+     */
+    void add(CompletableFuture<byte[]> response) {
+        synchronized (this) {
+            pending.add(response);
+        }
+        response.whenComplete((frame, error) -> collect());
+    }
+
+    /**
+     * Bekleyen tüm yanıtlar gönderilene kadar bekler
+     */
+    synchronized void awaitAll() throws InterruptedException {
+        while (!pending.isEmpty() || sending) {
+            wait();
+        }
+    }
+
+    // Future'ı tamamlayan thread'de çalışır: hazır yanıtları listeye alır, göndericiyi başlatır
+    private void collect() {
+        synchronized (this) {
+            while (!pending.isEmpty() && pending.peek().isDone()) {
+                outgoing.add(pending.poll().join());
+            }
+            if (outgoing.isEmpty() || sending) {
+                return;
+            }
+            sending = true;
+        }
+        try {
+            executor.execute(this::send);
+        } catch (RejectedExecutionException e) {
+            fail("executor kapalı");
+        }
+    }
+
+    // Gönderim listesi boşalana kadar Sink'e verir
+    private void send() {
+        while (true) {
+            List<byte[]> ready;
+            synchronized (this) {
+                if (outgoing.isEmpty()) {
+                    sending = false;
+                    notifyAll();
+                    return;
+                }
+                ready = outgoing;
+                outgoing = new ArrayList<>();
+            }
+            try {
+                sink.send(ready);
+            } catch (IOException e) {
+                fail(e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void fail(String reason) {
+        LOG.warn("Yanıt gönderilemedi: {}", reason);
+        synchronized (this) {
+            pending.clear();
+            outgoing.clear();
+            sending = false;
+            notifyAll();
+        }
+        onError.run();
+    }
+}
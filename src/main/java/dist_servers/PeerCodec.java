@@ -0,0 +1,386 @@
+package dist_servers;
+
+import com.google.protobuf.MessageLite;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Sunucular arası (peer) bağlantıların tel protokolü.
+ *
+ * Bağlantıyı açan taraf el sıkışmayı başlatır:
+ * [int magic][short sürüm][int sunucu ID][int özellikler]
+ * Karşı taraf aynı biçimde kendi ID'si, iki tarafın desteklediği en yüksek
+ * sürüm ve ortak özelliklerle (kesişim) cevap verir. Bağlantının geri kalanı
+ * bu sürüm ve özelliklerle kodlanır.
+ *
+ * Çerçeve: [int uzunluk][byte tür][byte bayraklar][yük]
+ * Uzunluk tür ve bayrak byte'larını da kapsar. COMPRESSION özelliği
+ * anlaşıldıysa eşikten büyük yükler Deflate ile sıkıştırılır ve
+ * FLAG_COMPRESSED ile işaretlenir; sıkıştırılmış yük [int ham uzunluk][veri]
+ * biçimindedir. Okuma tarafı işaretli çerçeveleri her zaman açar, bu yüzden
+ * toplu aktarımlar özellik anlaşılmamış olsa da sıkıştırılabilir.
+ *
+ * Okuma ve yazma farklı thread'lerden yapılabilir; her yön tek bir
+ * thread tarafından kullanılmalıdır. El sıkışma HANDSHAKE_TIMEOUT_MS ile
+ * sınırlıdır; böylece hiçbir şey göndermeyen bir bağlantı kabul eden thread'i
+ * bekletmez. close() soketi kapatır ve Deflater/Inflater'ın yerel belleğini
+ * bırakır; bağlantıyı kullanan taraflar codec'i her durumda kapatmalıdır.
+ */
+final class PeerCodec implements Closeable {
+    static final int MAGIC = 0x48535052; // "HSPR"
+    static final short VERSION = 1;
+
+    // Özellikler
+    static final int FEATURE_BATCHING = 1;
+    static final int FEATURE_COMPRESSION = 1 << 1;
+    static final int FEATURE_ANTI_ENTROPY = 1 << 2;
+    static final int FEATURE_STATE_TRANSFER = 1 << 3;
+    static final int FEATURE_HEARTBEAT = 1 << 4;
+
+    // Çerçeve türleri
+    static final byte TYPE_REPLICATION_BATCH = 1;
+    static final byte TYPE_REPLICATION_ACK = 2;
+    static final byte TYPE_MERKLE_ROOT = 3;
+    static final byte TYPE_MERKLE_NODES = 4;
+    static final byte TYPE_RANGE_TRANSFER = 5;
+    static final byte TYPE_TRANSFER_REQUEST = 6;
+    static final byte TYPE_TRANSFER_CHUNK = 7;
+    static final byte TYPE_TRANSFER_END = 8;
+    static final byte TYPE_HEARTBEAT = 9;
+
+    private static final byte FLAG_COMPRESSED = 1;
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int COMPRESSION_THRESHOLD = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int peerId;
+    private final short version;
+    private final int features;
+    // Sıkıştırıcılar yön başına farklı thread'lerden kullanılır; close() ile yarışmamaları için kilitlenir
+    private final Object deflaterLock = new Object();
+    private final Object inflaterLock = new Object();
+    private Deflater deflater;
+    private Inflater inflater;
+    private volatile boolean closed;
+    private Frame peeked;
+
+    private PeerCodec(Socket socket, DataInputStream in, DataOutputStream out, int peerId, short version, int features) {
+        this.socket = socket;
+        this.in = in;
+        this.out = out;
+        this.peerId = peerId;
+        this.version = version;
+        this.features = features;
+    }
+
+    /**
+     * Bağlantıyı açan taraf olarak el sıkışır
+     * @param serverId Kendi sunucu ID'miz
+     */
+    static PeerCodec connect(Socket socket, int serverId) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+        writeHello(out, VERSION, serverId, localFeatures());
+        out.flush();
+
+        Hello reply = readHello(socket, in);
+        return new PeerCodec(socket, in, out, reply.serverId, reply.version, reply.features);
+    }
+
+    /**
+     * Peer'ın peer portuna bağlanıp el sıkışır; başarısız olursa soketi kapatır
+     * @param sessionTimeoutMillis El sıkışmadan sonra okumalarda kullanılacak zaman aşımı
+     */
+    static PeerCodec open(ClusterMembership.Member peer, int serverId,
+                          int connectTimeoutMillis, int sessionTimeoutMillis) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(peer.getHost(), peer.getPeerPort()), connectTimeoutMillis);
+            socket.setSoTimeout(sessionTimeoutMillis);
+            return connect(socket, serverId);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Peer portuna gelen bağlantı için el sıkışmayı cevaplar
+     * @param serverId Kendi sunucu ID'miz
+     */
+    static PeerCodec accept(Socket socket, int serverId) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+        Hello hello = readHello(socket, in);
+        short version = (short) Math.min(VERSION, hello.version);
+        int features = hello.features & localFeatures();
+        writeHello(out, version, serverId, features);
+        out.flush();
+        return new PeerCodec(socket, in, out, hello.serverId, version, features);
+    }
+
+    // Bu sunucunun desteklediği özellikler; sıkıştırma "-Dpeer.compression=true" ile açılır
+    private static int localFeatures() {
+        int features = FEATURE_BATCHING | FEATURE_ANTI_ENTROPY | FEATURE_STATE_TRANSFER | FEATURE_HEARTBEAT;
+        if (Boolean.getBoolean("peer.compression")) {
+            features |= FEATURE_COMPRESSION;
+        }
+        return features;
+    }
+
+    private static void writeHello(DataOutputStream out, short version, int serverId, int features) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(version);
+        out.writeInt(serverId);
+        out.writeInt(features);
+    }
+
+    // Soketin zaman aşımı el sıkışma boyunca en fazla HANDSHAKE_TIMEOUT_MS olur, sonra geri alınır
+    private static Hello readHello(Socket socket, DataInputStream in) throws IOException {
+        int timeout = socket.getSoTimeout();
+        socket.setSoTimeout(timeout == 0 ? HANDSHAKE_TIMEOUT_MS : Math.min(timeout, HANDSHAKE_TIMEOUT_MS));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Geçersiz peer el sıkışması");
+            }
+            short version = in.readShort();
+            if (version < 1) {
+                throw new IOException("Desteklenmeyen peer protokol sürümü: " + version);
+            }
+            return new Hello(version, in.readInt(), in.readInt());
+        } finally {
+            socket.setSoTimeout(timeout);
+        }
+    }
+
+    int getPeerId() {
+        return peerId;
+    }
+
+    short getVersion() {
+        return version;
+    }
+
+    /**
+     * İki tarafın da desteklediği özellik ise true
+     */
+    boolean supports(int feature) {
+        return (features & feature) != 0;
+    }
+
+    Socket getSocket() {
+        return socket;
+    }
+
+    /**
+     * Çerçeveyi tampona yazar; gönderim için flush çağrılmalıdır
+     */
+    void write(byte type, MessageLite message) throws IOException {
+        write(type, message, supports(FEATURE_COMPRESSION));
+    }
+
+    /**
+     * Sıkıştırma anlaşılmamış olsa da eşikten büyük yükü sıkıştırarak yazar
+     * (toplu durum aktarımı için)
+     */
+    void writeCompressed(byte type, MessageLite message) throws IOException {
+        write(type, message, true);
+    }
+
+    private void write(byte type, MessageLite message, boolean compress) throws IOException {
+        byte[] payload = message.toByteArray();
+        byte flags = 0;
+        if (compress && payload.length >= COMPRESSION_THRESHOLD) {
+            payload = compress(payload);
+            flags |= FLAG_COMPRESSED;
+        }
+        out.writeInt(payload.length + 2);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.write(payload);
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Sıradaki çerçeveyi tüketmeden okur; bağlantının türünü ilk çerçeveye
+     * bakarak belirlemek için kullanılır
+     * @return Çerçeve, bağlantı düzgün kapandıysa null
+     */
+    Frame peek() throws IOException {
+        if (peeked == null) {
+            peeked = readFrame();
+        }
+        return peeked;
+    }
+
+    /**
+     * Sıradaki çerçeveyi okur
+     * @return Çerçeve, bağlantı düzgün kapandıysa null
+     */
+    Frame read() throws IOException {
+        if (peeked != null) {
+            Frame frame = peeked;
+            peeked = null;
+            return frame;
+        }
+        return readFrame();
+    }
+
+    private Frame readFrame() throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 2 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Geçersiz peer çerçeve uzunluğu: " + length);
+        }
+        byte type = in.readByte();
+        byte flags = in.readByte();
+        byte[] payload = new byte[length - 2];
+        in.readFully(payload);
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            payload = decompress(payload);
+        }
+        return new Frame(type, payload);
+    }
+
+    /**
+     * Okuma tamponunda bloklamadan okunabilecek veri varsa true
+     */
+    boolean hasBufferedInput() throws IOException {
+        return peeked != null || in.available() > 0;
+    }
+
+    /**
+     * Soketi kapatır ve sıkıştırıcıları bırakır; diğer yöndeki thread bir
+     * sonraki okuma/yazmada hata alır. Birden fazla kez çağrılabilir.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        synchronized (deflaterLock) {
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+        synchronized (inflaterLock) {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+
+    private byte[] compress(byte[] data) throws IOException {
+        synchronized (deflaterLock) {
+            if (closed) {
+                throw new IOException("Peer bağlantısı kapalı");
+            }
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            return compress(deflater, data);
+        }
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 16);
+        DataOutputStream header = new DataOutputStream(compressed);
+        try {
+            header.writeInt(data.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.write(chunk, 0, n);
+        }
+        return compressed.toByteArray();
+    }
+
+    private byte[] decompress(byte[] data) throws IOException {
+        if (data.length < 4) {
+            throw new IOException("Bozuk sıkıştırılmış çerçeve");
+        }
+        int rawLength = ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16) | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+        if (rawLength < 0 || rawLength > MAX_FRAME_SIZE) {
+            throw new IOException("Geçersiz sıkıştırılmış çerçeve uzunluğu: " + rawLength);
+        }
+        synchronized (inflaterLock) {
+            if (closed) {
+                throw new IOException("Peer bağlantısı kapalı");
+            }
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            return decompress(inflater, data, rawLength);
+        }
+    }
+
+    private static byte[] decompress(Inflater inflater, byte[] data, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(data, 4, data.length - 4);
+        byte[] raw = new byte[rawLength];
+        try {
+            int done = 0;
+            while (done < rawLength) {
+                int n = inflater.inflate(raw, done, rawLength - done);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Sıkıştırılmış çerçeve eksik");
+                }
+                done += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Sıkıştırılmış çerçeve çözülemedi: " + e.getMessage());
+        }
+        return raw;
+    }
+
+    /**
+     * Çözülmüş (gerekirse açılmış) çerçeve
+     */
+    static final class Frame {
+        final byte type;
+        final byte[] payload;
+
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Hello {
+        final short version;
+        final int serverId;
+        final int features;
+
+        Hello(short version, int serverId, int features) {
+            this.version = version;
+            this.serverId = serverId;
+            this.features = features;
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package dist_servers;
+
+import com.hasup.proto.ReplicationProto.Heartbeat;
+import com.hasup.proto.ReplicationProto.ReplicationAck;
+import com.hasup.proto.ReplicationProto.ReplicationBatch;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Bir peer'a yapılan replikasyonu yönetir.
+ *
+ * Değişiklikler yazma yolunda yalnızca kuyruğa eklenir ve her birine artan
+ * bir sıra numarası verilir. Ayrı bir gönderici thread kuyruktaki kayıtları
+ * onay beklemeden (pipelined) peer bağlantısına yazar. Gönderici ilk kayıttan
+ * sonra kısa bir süre ("-Dreplication.batch.linger.us", varsayılan 200) daha
+ * bekleyerek gelen kayıtları en fazla "-Dreplication.batch.max" (varsayılan
+ * 1024) kayıtlık tek bir ReplicationBatch çerçevesinde birleştirir. Alıcı uyguladığı ve
+ * log'a yazdığı son sıra numarasını kümülatif onay olarak geri gönderir;
+ * onaylanan kayıtlar kuyruktan düşer. Bağlantı koparsa yeniden bağlanılır
+ * ve onaylanmamış kayıtlar sırayla tekrar gönderilir (uygulama idempotenttir).
+ * Yazma yolu whenAcked ile belirli bir kaydın onayını bloklamadan bekleyebilir.
+ *
+ * Bağlantı: gönderen tarafın peer portuna açtığı soket. PeerCodec el
+ * sıkışmasından sonra gönderenden alıcıya ReplicationBatch, alıcıdan
+ * gönderene ReplicationAck çerçeveleri akar. Peer toplu göndermeyi
+ * desteklemiyorsa her çerçevede tek kayıt gönderilir.
+ *
+ * Gönderilecek kayıt yokken bağlantıya "-Dheartbeat.interval.ms" aralığıyla
+ * Heartbeat çerçevesi yazılır; alıcı gelen her çerçeveyi FailureDetector'a
+ * bildirir. Peer şüpheli sayılınca suspect ile bağlantı kapatılır ve onay
+ * bekleyenler TCP zaman aşımı beklenmeden hata ile tamamlanır.
+ *
+ * Metrikler: "replication.send" çerçeve yazma süresi, "replication.sent"
+ * gönderilen kayıt sayısı, "replication.ack.peerN" kaydın kuyruğa
+ * eklenmesinden peer onayına kadar geçen süre; alıcı tarafta
+ * "replication.apply" çerçevelerin uygulanıp log'a yazılma süresi ve
+ * "replication.applied" uygulanan kayıt sayısı.
+ */
+public class PeerReplicator implements Closeable {
+    private static final int MAX_PENDING = 1_000_000;
+    private static final int MAX_WRITE_BATCH = 4096;
+    private static final int MAX_FRAME_ENTRIES = Integer.getInteger("replication.batch.max", 1024);
+    private static final long LINGER_NANOS = Long.getLong("replication.batch.linger.us", 200) * 1000;
+    private static final long RECONNECT_DELAY_MS = 1000;
+    private static final long IDLE_WAIT_MS = 100;
+    private static final long HEARTBEAT_INTERVAL_MS = FailureDetector.heartbeatInterval();
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    // Heartbeat gelmeyen gelen bağlantı yarı açık kalmış sayılır
+    private static final int RECEIVE_TIMEOUT_MS = 10_000;
+
+    private final int serverId;
+    private final Log log;
+    private final int peerId;
+    private final String host;
+    private final int port;
+    private final Metrics metrics;
+    private final LatencyHistogram ackLatency;
+
+    // Henüz gönderilmemiş ve gönderilip onay bekleyen kayıtlar; this ile korunur
+    private final ArrayDeque<Entry> unsent = new ArrayDeque<>();
+    private final ArrayDeque<Entry> unacked = new ArrayDeque<>();
+    private final PriorityQueue<AckWaiter> waiters = new PriorityQueue<>(Comparator.comparingLong(w -> w.sequence));
+    private long nextSequence = 1;
+    private long dropped;
+    private long droppedUpTo;
+
+    private volatile long ackedSequence;
+    private volatile boolean running;
+    private volatile Socket socket;
+    private Thread sender;
+
+    public PeerReplicator(int serverId, int peerId, String host, int port, Metrics metrics) {
+        this.serverId = serverId;
+        this.log = Log.get(PeerReplicator.class, serverId);
+        this.peerId = peerId;
+        this.host = host;
+        this.port = port;
+        this.metrics = metrics;
+        this.ackLatency = metrics.timer("replication.ack.peer" + peerId);
+    }
+
+    /**
+     * Gönderici thread'ini başlatır; birden fazla çağrılması sorun değildir
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        sender = new Thread(this::sendLoop, "Server" + serverId + "-peer" + peerId + "-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    public int getPeerId() {
+        return peerId;
+    }
+
+    /**
+     * Değişikliği peer kuyruğuna ekler
+     * @return Değişikliğe verilen sıra numarası
+     */
+    public long replicate(Subscriber subscriber) {
+        long sequence;
+        List<AckWaiter> failed;
+        synchronized (this) {
+            sequence = nextSequence++;
+            unsent.add(new Entry(sequence, subscriber, System.nanoTime()));
+            failed = trim();
+            notifyAll();
+        }
+        fail(failed, "replikasyon kaydı düşürüldü");
+        return sequence;
+    }
+
+    /**
+     * Listeyi sırayla kuyruğa ekler
+     * @return Son değişikliğe verilen sıra numarası
+     */
+    public long replicateAll(List<Subscriber> batch) {
+        long sequence;
+        List<AckWaiter> failed;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Subscriber subscriber : batch) {
+                unsent.add(new Entry(nextSequence++, subscriber, now));
+            }
+            sequence = nextSequence - 1;
+            failed = trim();
+            notifyAll();
+        }
+        fail(failed, "replikasyon kaydı düşürüldü");
+        return sequence;
+    }
+    
+    /**
+     * Verilen sıra numarası peer tarafından onaylandığında tamamlanan future.
+     * Kayıt onaylanmadan kuyruktan düşürülürse ya da replikatör kapanırsa
+     * future hata ile tamamlanır.
+     */
+    public CompletableFuture<Void> whenAcked(long sequence) {
+        synchronized (this) {
+            if (sequence > ackedSequence && sequence > droppedUpTo && running) {
+                AckWaiter waiter = new AckWaiter(sequence);
+                waiters.add(waiter);
+                return waiter.future;
+            }
+        }
+        if (sequence <= ackedSequence) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.failedFuture(new IOException("Peer" + peerId + " replikasyonu çalışmıyor"));
+    }
+
+    /**
+     * Kuyruğa eklenmiş son değişikliğin sıra numarası
+     */
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Peer verilen sıra numarasına kadarki değişiklikleri toplu durum
+     * aktarımıyla aldığında çağrılır. Bu kayıtlar gönderilmeden onaylanmış
+     * sayılır ve replikasyon bir sonraki kayıttan devam eder.
+     */
+    public void coveredUpTo(long sequence) {
+        synchronized (this) {
+            while (!unsent.isEmpty() && unsent.peekFirst().sequence <= sequence) {
+                unsent.pollFirst();
+            }
+        }
+        acknowledge(sequence);
+    }
+
+    /**
+     * Peer'ın uygulayıp onayladığı son sıra numarası
+     */
+    public long getAckedSequence() {
+        return ackedSequence;
+    }
+
+    /**
+     * Onay bekleyen (gönderilmiş ya da gönderilmemiş) değişiklik sayısı
+     */
+    public synchronized int getPendingCount() {
+        return unsent.size() + unacked.size();
+    }
+
+    /**
+     * Peer yanıt vermiyor: bağlantı kapatılır (gönderici yeniden bağlanmayı
+     * dener) ve onay bekleyenler hemen hata ile tamamlanır. Kayıtlar kuyrukta
+     * kalır ve bağlantı yeniden kurulunca gönderilir.
+     */
+    public void suspect() {
+        List<AckWaiter> failed;
+        synchronized (this) {
+            failed = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        closeSocket();
+        fail(failed, "yanıt vermiyor");
+    }
+
+    public boolean isConnected() {
+        Socket current = socket;
+        return current != null && !current.isClosed();
+    }
+
+    @Override
+    public void close() {
+        List<AckWaiter> failed;
+        synchronized (this) {
+            running = false;
+            failed = new ArrayList<>(waiters);
+            waiters.clear();
+            notifyAll();
+        }
+        closeSocket();
+        fail(failed, "replikatör kapatıldı");
+    }
+
+    // Peer uzun süre ulaşılamazsa bellek sınırsız büyümesin, en eski kayıtlar düşürülür.
+    // this tutulurken çağrılır; onayı artık gelmeyecek bekleyenleri döndürür.
+    private List<AckWaiter> trim() {
+        int overflow = unsent.size() + unacked.size() - MAX_PENDING;
+        if (overflow <= 0) {
+            return null;
+        }
+        if (dropped == 0) {
+            log.warn("Peer{} çok geride kaldı, en eski replikasyon kayıtları düşürülüyor", peerId);
+        }
+        for (int i = 0; i < overflow; i++) {
+            Entry entry = unacked.pollFirst();
+            if (entry == null) {
+                entry = unsent.pollFirst();
+            }
+            droppedUpTo = entry.sequence;
+        }
+        dropped += overflow;
+        return pollWaiters(droppedUpTo);
+    }
+    
+    // this tutulurken çağrılır
+    private List<AckWaiter> pollWaiters(long upTo) {
+        List<AckWaiter> ready = null;
+        while (!waiters.isEmpty() && waiters.peek().sequence <= upTo) {
+            if (ready == null) {
+                ready = new ArrayList<>();
+            }
+            ready.add(waiters.poll());
+        }
+        return ready;
+    }
+    
+    // Future'lar kilit dışında tamamlanır; bağlı işler replikatörü bekletmemeli
+    private void fail(List<AckWaiter> failed, String reason) {
+        if (failed != null) {
+            for (AckWaiter waiter : failed) {
+                waiter.future.completeExceptionally(new IOException("Peer" + peerId + ": " + reason));
+            }
+        }
+    }
+
+    private void sendLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_FRAME_ENTRIES);
+        while (running) {
+            Socket current = new Socket();
+            try {
+                current.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                current.setTcpNoDelay(true);
+            } catch (IOException e) {
+                closeQuietly(current);
+                pause();
+                continue;
+            }
+            socket = current;
+            try {
+                PeerCodec codec = PeerCodec.connect(current, serverId);
+                if (codec.getPeerId() != peerId) {
+                    throw new IOException("beklenmeyen peer ID: " + codec.getPeerId());
+                }
+                int maxEntries = codec.supports(PeerCodec.FEATURE_BATCHING) ? MAX_FRAME_ENTRIES : 1;
+                log.info("Server{} ile replikasyon bağlantısı kuruldu (protokol v{}, sıkıştırma {})", peerId,
+                    codec.getVersion(), codec.supports(PeerCodec.FEATURE_COMPRESSION) ? "açık" : "kapalı");
+
+                requeueUnacked();
+                Thread acks = new Thread(() -> readAcks(codec), "Server" + serverId + "-peer" + peerId + "-acks");
+                acks.setDaemon(true);
+                acks.start();
+
+                boolean heartbeats = codec.supports(PeerCodec.FEATURE_HEARTBEAT);
+                long lastFlush = System.nanoTime();
+                while (running) {
+                    if (!takeUnsent(batch, maxEntries, true)) {
+                        if (current.isClosed()) {
+                            throw new EOFException("bağlantı kapandı");
+                        }
+                        if (heartbeats && System.nanoTime() - lastFlush >= HEARTBEAT_INTERVAL_MS * 1_000_000) {
+                            codec.write(PeerCodec.TYPE_HEARTBEAT,
+                                Heartbeat.newBuilder().setSentAt(System.currentTimeMillis()).build());
+                            codec.flush();
+                            lastFlush = System.nanoTime();
+                        }
+                        continue;
+                    }
+                    // Çerçeve dolmadıysa pencere boyunca gelenleri de aynı çerçeveye al
+                    if (batch.size() < maxEntries && LINGER_NANOS > 0) {
+                        LockSupport.parkNanos(LINGER_NANOS);
+                        takeUnsent(batch, maxEntries, false);
+                    }
+
+                    // Onay beklemeden yaz; kuyruk boşalana kadar tek flush
+                    ReplicationBatch.Builder frame = ReplicationBatch.newBuilder()
+                        .setFirstSequence(batch.get(0).sequence)
+                        .setLastSequence(batch.get(batch.size() - 1).sequence);
+                    for (Entry entry : batch) {
+                        frame.addSubscribers(entry.subscriber);
+                    }
+                    long started = System.nanoTime();
+                    codec.write(PeerCodec.TYPE_REPLICATION_BATCH, frame.build());
+                    metrics.counter("replication.sent").add(batch.size());
+                    batch.clear();
+                    if (!hasUnsent()) {
+                        codec.flush();
+                        lastFlush = System.nanoTime();
+                    }
+                    metrics.recordSince("replication.send", started);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Peer{} replikasyon bağlantısı koptu: {}", peerId, e.getMessage());
+                }
+            } finally {
+                batch.clear();
+                closeSocket();
+            }
+            pause();
+        }
+    }
+
+    // Gönderilecek kayıtları çerçeve sınırına kadar alır ve onay bekleyenlere taşır.
+    // wait ise kuyruk boşken kısa süre bekler; hiç kayıt alınamadıysa false.
+    private synchronized boolean takeUnsent(List<Entry> batch, int maxEntries, boolean wait) {
+        if (unsent.isEmpty() && wait) {
+            try {
+                wait(Math.min(IDLE_WAIT_MS, HEARTBEAT_INTERVAL_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+        while (!unsent.isEmpty() && batch.size() < maxEntries) {
+            Entry entry = unsent.pollFirst();
+            unacked.addLast(entry);
+            batch.add(entry);
+        }
+        return !batch.isEmpty();
+    }
+
+    private synchronized boolean hasUnsent() {
+        return !unsent.isEmpty();
+    }
+
+    // Yeni bağlantıda onaylanmamış kayıtlar ilk sırada tekrar gönderilir
+    private synchronized void requeueUnacked() {
+        Iterator<Entry> pending = unacked.descendingIterator();
+        while (pending.hasNext()) {
+            unsent.addFirst(pending.next());
+        }
+        unacked.clear();
+    }
+
+    private void readAcks(PeerCodec codec) {
+        try {
+            PeerCodec.Frame frame;
+            while ((frame = codec.read()) != null) {
+                if (frame.type == PeerCodec.TYPE_REPLICATION_ACK) {
+                    acknowledge(ReplicationAck.parseFrom(frame.payload).getSequence());
+                }
+            }
+        } catch (IOException e) {
+            // Gönderici bağlantının kapandığını fark edip yeniden bağlanır
+        } finally {
+            codec.close();
+        }
+    }
+
+    private void acknowledge(long sequence) {
+        List<AckWaiter> ready;
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (!unacked.isEmpty() && unacked.peekFirst().sequence <= sequence) {
+                ackLatency.record(now - unacked.pollFirst().enqueuedAt);
+            }
+            if (sequence > ackedSequence) {
+                ackedSequence = sequence;
+            }
+            ready = pollWaiters(sequence);
+        }
+        if (ready != null) {
+            for (AckWaiter waiter : ready) {
+                waiter.future.complete(null);
+            }
+        }
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            closeQuietly(current);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Peer portuna gelen bir replikasyon bağlantısını okur. Çerçeveler, okunabilen
+     * kadarı bir araya toplanarak apply ile uygulanır; dönen future (log yazımı)
+     * tamamlanınca son sıra numarası onay olarak gönderilir.
+     * Bağlantı kapanana kadar çağıran thread'de çalışır.
+     *
+     * @param serverId Alıcı sunucunun ID'si
+     * @param codec El sıkışması tamamlanmış peer bağlantısı
+     * @param apply Değişiklikleri depoya uygulayıp log'a ekleyen fonksiyon
+     * @param detector Gelen çerçevelerin canlılık işareti olarak bildirileceği dedektör
+     * @param metrics Uygulama süresinin kaydedileceği metrikler
+     */
+    static void receive(int serverId, PeerCodec codec,
+                        Function<List<Subscriber>, CompletableFuture<Long>> apply,
+                        BooleanSupplier running, FailureDetector detector, Metrics metrics) {
+        int peerId = codec.getPeerId();
+        boolean heartbeats = codec.supports(PeerCodec.FEATURE_HEARTBEAT);
+        AckWriter acks = new AckWriter(serverId, codec);
+        try {
+            if (heartbeats) {
+                codec.getSocket().setSoTimeout(RECEIVE_TIMEOUT_MS);
+            }
+            List<Subscriber> batch = new ArrayList<>();
+            long applied = 0;
+            long last = 0;
+            while (running.getAsBoolean()) {
+                PeerCodec.Frame received = codec.read();
+                if (received == null) {
+                    break;
+                }
+                if (heartbeats) {
+                    detector.heartbeat(peerId);
+                }
+                if (received.type != PeerCodec.TYPE_REPLICATION_BATCH) {
+                    continue;
+                }
+                ReplicationBatch frame = ReplicationBatch.parseFrom(received.payload);
+                // Aynı bağlantıda tekrar gelen kayıtları atla
+                long sequence = frame.getFirstSequence();
+                for (Subscriber subscriber : frame.getSubscribersList()) {
+                    if (sequence > applied) {
+                        batch.add(subscriber);
+                        last = sequence;
+                    }
+                    sequence++;
+                }
+                if (!batch.isEmpty() && (!codec.hasBufferedInput() || batch.size() >= MAX_WRITE_BATCH)) {
+                    long acked = last;
+                    applied = last;
+                    long started = System.nanoTime();
+                    metrics.counter("replication.applied").add(batch.size());
+                    apply.apply(batch).whenComplete((lsn, error) -> {
+                        if (error == null) {
+                            metrics.recordSince("replication.apply", started);
+                            acks.acknowledge(acked);
+                        } else {
+                            // Onaylanmayan kayıtlar gönderen tarafından yeniden gönderilir
+                            acks.close();
+                        }
+                    });
+                    batch = new ArrayList<>();
+                }
+            }
+        } catch (IOException e) {
+            Log.get(PeerReplicator.class, serverId).warn("Peer{} bağlantısı koptu: {}", peerId, e.getMessage());
+        } finally {
+            acks.close();
+        }
+    }
+
+    private static final class AckWaiter {
+        final long sequence;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        AckWaiter(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final Subscriber subscriber;
+        final long enqueuedAt;
+
+        Entry(long sequence, Subscriber subscriber, long enqueuedAt) {
+            this.sequence = sequence;
+            this.subscriber = subscriber;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * Onayları log thread'ini bekletmeden ayrı bir thread'den gönderir.
+     * Onaylar kümülatif olduğundan bekleyen en büyük değerin gönderilmesi yeterlidir.
+     */
+    private static final class AckWriter implements Runnable {
+        private final PeerCodec codec;
+        private final Thread thread;
+        private long pending;
+        private long sent;
+        private boolean closed;
+
+        AckWriter(int serverId, PeerCodec codec) {
+            this.codec = codec;
+            this.thread = new Thread(this, "Server" + serverId + "-peer" + codec.getPeerId() + "-ack-writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        synchronized void acknowledge(long sequence) {
+            if (sequence > pending) {
+                pending = sequence;
+                notifyAll();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    long sequence;
+                    synchronized (this) {
+                        while (pending == sent && !closed) {
+                            wait();
+                        }
+                        if (closed) {
+                            break;
+                        }
+                        sequence = pending;
+                    }
+                    codec.write(PeerCodec.TYPE_REPLICATION_ACK, ReplicationAck.newBuilder().setSequence(sequence).build());
+                    codec.flush();
+                    sent = sequence;
+                }
+            } catch (IOException | InterruptedException e) {
+                // Bağlantı kapandı
+            } finally {
+                codec.close();
+            }
+        }
+    }
+}
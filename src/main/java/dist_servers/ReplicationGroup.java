@@ -0,0 +1,287 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bir sunucunun tüm peer replikatörlerini ve yazma modunu bir arada tutar.
+ *
+ * "-Dwrite.mode" ile seçilir:
+ * "async" (varsayılan) değişiklik yerel log'a yazılınca onaylanır, peer'lara
+ * arka planda gönderilir. "quorum" modunda ayrıca fault_tolerance_level kadar
+ * peer'ın değişikliği onaylaması beklenir. Bekleme future'larla yapılır,
+ * istek thread'i bloklanmaz. Süre "-Dwrite.quorum.timeout.ms" ile sınırlıdır.
+ *
+ * Her değişiklik yalnızca halkada aboneyi tutan diğer düğümlere
+ * (fault_tolerance_level + 1 sahipten bu sunucu dışındakilere) gönderilir.
+ * Hata dedektörünün şüpheli saydığı peer'ların onayı beklenmez; kayıt yine
+ * kuyruğa eklenir ama quorum bu peer'ı başarısız sayar, böylece yazma zaman
+ * aşımını beklemeden sonuçlanır.
+ *
+ * Halkada aboneyi tutan fault_tolerance_level kadar başka düğüm yoksa (örn.
+ * küme fault_tolerance_level + 1'den küçükse) quorum küçültülmez: quorum
+ * modunda yazma başarısız olur, her iki modda "replication.insufficient"
+ * sayacı artırılır.
+ *
+ * Quorum modunda yeterli replika olmadığı ya da sahip peer'lar şüpheli
+ * olduğu önceden biliniyorsa yazma depoya uygulanmadan reddedilir
+ * (canReachQuorum). Aksi halde quorum beklenmeden önce değişiklik yerel
+ * depoya uygulanır, log'a ve peer kuyruklarına eklenir; okuyucular onu hemen
+ * görür. Log yazımı ya da quorum bundan sonra başarısız olursa değişiklik geri alınmaz ve client'a "reddedildi" yerine
+ * WriteResult.UNCONFIRMED (yanıtta Status.PEND) döner: yazma kaybolmuş da
+ * olabilir, replikatörler ve anti-entropy ile kümeye yayılmış da.
+ */
+public class ReplicationGroup implements Closeable {
+    static final String MODE_PROPERTY = "write.mode";
+    static final String TIMEOUT_PROPERTY = "write.quorum.timeout.ms";
+
+    private final Log log;
+    private final Metrics metrics;
+    private final List<PeerReplicator> replicators;
+    private final HashRing ring;
+    private final FailureDetector detector;
+    private final boolean quorum;
+    private final long timeoutMillis;
+
+    ReplicationGroup(int serverId, List<PeerReplicator> replicators, HashRing ring, FailureDetector detector, Metrics metrics) {
+        this.log = Log.get(ReplicationGroup.class, serverId);
+        this.metrics = metrics;
+        this.replicators = replicators;
+        this.ring = ring;
+        this.detector = detector;
+        this.quorum = "quorum".equalsIgnoreCase(System.getProperty(MODE_PROPERTY, "async"));
+        this.timeoutMillis = Long.getLong(TIMEOUT_PROPERTY, 5000);
+    }
+
+    /**
+     * Replikatörleri başlatır (bağlanamayanlar kendileri tekrar dener)
+     */
+    public void start() {
+        for (PeerReplicator replicator : replicators) {
+            replicator.start();
+        }
+    }
+
+    public List<PeerReplicator> getReplicators() {
+        return replicators;
+    }
+
+    /**
+     * Verilen peer'ın replikatörü, üyelikte yoksa null
+     */
+    public PeerReplicator getReplicator(int peerId) {
+        for (PeerReplicator replicator : replicators) {
+            if (replicator.getPeerId() == peerId) {
+                return replicator;
+            }
+        }
+        return null;
+    }
+
+    public boolean isQuorumMode() {
+        return quorum;
+    }
+
+    /**
+     * Quorum modunda, aboneyi tutan ve hata dedektörüne göre erişilebilir
+     * peer sayısı fault_tolerance_level'a yetiyorsa true. Yazma depoya
+     * uygulanmadan önce çağrılır; false ise yazma hiç görünür olmadan
+     * reddedilebilir. Async modda her zaman true.
+     */
+    public boolean canReachQuorum(int subscriberId, int faultToleranceLevel) {
+        if (!quorum || faultToleranceLevel <= 0) {
+            return true;
+        }
+        int[] owners = ring.ownersOf(subscriberId, faultToleranceLevel + 1);
+        int reachable = 0;
+        for (PeerReplicator replicator : replicators) {
+            if (HashRing.contains(owners, owners.length, replicator.getPeerId())
+                    && detector.isAvailable(replicator.getPeerId())) {
+                reachable++;
+            }
+        }
+        if (reachable < faultToleranceLevel) {
+            metrics.counter("replication.insufficient").increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Değişikliği aboneyi tutan peer'ların kuyruklarına ekler
+     * @param faultToleranceLevel 0 ise replikasyon yapılmaz
+     * @return Yazma modunun gerektirdiği onaylar geldiğinde tamamlanan future
+     */
+    public CompletableFuture<Void> replicate(Subscriber subscriber, int faultToleranceLevel) {
+        if (faultToleranceLevel <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int[] owners = ring.ownersOf(subscriber.getId(), faultToleranceLevel + 1);
+        List<CompletableFuture<Void>> acks = new ArrayList<>(owners.length);
+        int replicas = 0;
+        for (PeerReplicator replicator : replicators) {
+            if (HashRing.contains(owners, owners.length, replicator.getPeerId())) {
+                replicas++;
+                long sequence = replicator.replicate(subscriber);
+                if (quorum) {
+                    acks.add(whenAcked(replicator, sequence));
+                }
+            }
+        }
+        if (replicas < faultToleranceLevel) {
+            return insufficient(replicas, faultToleranceLevel);
+        }
+        // Sunucu sahiplerden biriyse diğer tüm sahipler onaylamalı, değilse ftl tanesi yeterli
+        return awaitAcks(faultToleranceLevel, acks);
+    }
+
+    /**
+     * Listeyi her peer'a, o peer'ın tuttuğu abonelerle sınırlayarak sırayla ekler.
+     * Quorum modunda son kaydın onayı (kümülatif olduğu için) peer'a giden tüm
+     * listenin onayıdır; her abonenin diğer sahiplerinin hepsi onaylamalıdır.
+     */
+    public CompletableFuture<Void> replicateAll(List<Subscriber> batch, int faultToleranceLevel) {
+        if (faultToleranceLevel <= 0 || batch.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<List<Subscriber>> perPeer = new ArrayList<>(replicators.size());
+        for (int i = 0; i < replicators.size(); i++) {
+            perPeer.add(new ArrayList<>());
+        }
+        int replicas = Integer.MAX_VALUE;
+        for (Subscriber subscriber : batch) {
+            int[] owners = ring.ownersOf(subscriber.getId(), faultToleranceLevel + 1);
+            int subscriberReplicas = 0;
+            for (int i = 0; i < replicators.size(); i++) {
+                if (HashRing.contains(owners, owners.length, replicators.get(i).getPeerId())) {
+                    perPeer.get(i).add(subscriber);
+                    subscriberReplicas++;
+                }
+            }
+            replicas = Math.min(replicas, subscriberReplicas);
+        }
+
+        List<CompletableFuture<Void>> acks = new ArrayList<>(replicators.size());
+        for (int i = 0; i < replicators.size(); i++) {
+            if (!perPeer.get(i).isEmpty()) {
+                PeerReplicator replicator = replicators.get(i);
+                long sequence = replicator.replicateAll(perPeer.get(i));
+                if (quorum) {
+                    acks.add(whenAcked(replicator, sequence));
+                }
+            }
+        }
+        if (replicas < faultToleranceLevel) {
+            return insufficient(replicas, faultToleranceLevel);
+        }
+        return awaitAcks(acks.size(), acks);
+    }
+
+    /**
+     * Hata dedektörü peer'ı şüpheli saydığında çağrılır
+     */
+    void suspect(int peerId) {
+        PeerReplicator replicator = getReplicator(peerId);
+        if (replicator != null) {
+            replicator.suspect();
+        }
+    }
+
+    private CompletableFuture<Void> whenAcked(PeerReplicator replicator, long sequence) {
+        if (!detector.isAvailable(replicator.getPeerId())) {
+            return CompletableFuture.failedFuture(new IOException("Peer" + replicator.getPeerId() + " yanıt vermiyor"));
+        }
+        return replicator.whenAcked(sequence);
+    }
+
+    // Kayıt eldeki replikalara yine gönderilmiştir, ancak istenen dayanıklılık sağlanamaz
+    private CompletableFuture<Void> insufficient(int replicas, int faultToleranceLevel) {
+        metrics.counter("replication.insufficient").increment();
+        if (!quorum) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.failedFuture(new IOException(
+            "Yeterli replika yok: " + replicas + "/" + faultToleranceLevel));
+    }
+
+    private CompletableFuture<Void> awaitAcks(int required, List<CompletableFuture<Void>> acks) {
+        if (!quorum) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Quorum quorum = new Quorum(required, acks.size(), timeoutMillis);
+        for (CompletableFuture<Void> ack : acks) {
+            quorum.add(ack);
+        }
+        return quorum.future();
+    }
+
+    /**
+     * Yerel log yazımı ile replikasyon onaylarını birleştirir. Değişiklik bu
+     * noktada depoya uygulanmış ve peer kuyruklarına eklenmiş olduğundan
+     * başarısızlık "yazılmadı" değil "onaylanamadı" anlamına gelir.
+     * @return İkisi de başarılıysa APPLIED, biri başarısız ya da süresi dolduysa UNCONFIRMED
+     */
+    public CompletableFuture<WriteResult> whenDurable(CompletableFuture<Long> logged, CompletableFuture<Void> replicated) {
+        return logged.thenCombine(replicated, (lsn, ignored) -> WriteResult.APPLIED)
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                log.warn("Değişiklik onaylanamadı: {}", cause);
+                metrics.counter("replication.unconfirmed").increment();
+                return WriteResult.UNCONFIRMED;
+            });
+    }
+
+    @Override
+    public void close() {
+        for (PeerReplicator replicator : replicators) {
+            replicator.close();
+        }
+    }
+
+    /**
+     * N peer'dan en az "required" tanesi onaylayınca tamamlanır; bu artık
+     * mümkün değilse ya da süre dolarsa hata ile tamamlanır
+     */
+    private static final class Quorum {
+        private final int required;
+        private final int tolerated;
+        private final AtomicInteger acked = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Quorum(int required, int peers, long timeoutMillis) {
+            this.required = required;
+            this.tolerated = peers - required;
+            if (required == 0) {
+                result.complete(null);
+            } else {
+                result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void add(CompletableFuture<Void> ack) {
+            ack.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    if (acked.incrementAndGet() == required) {
+                        result.complete(null);
+                    }
+                } else if (failed.incrementAndGet() == tolerated + 1) {
+                    result.completeExceptionally(new IOException("Yeterli peer onayı alınamadı: " + error.getMessage()));
+                }
+            });
+        }
+
+        CompletableFuture<Void> future() {
+            return result;
+        }
+    }
+}
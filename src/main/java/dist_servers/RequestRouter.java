@@ -0,0 +1,307 @@
+package dist_servers;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.hasup.proto.SubscriberBatchProto.SubscriberBatch;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Bu düğümün tutmadığı abonelere gelen istekleri halkada aboneyi tutan
+ * düğüme iletir. İletim, hedefin client portu üzerinden normal client
+ * protokolüyle yapılır; her hedef için tek bir boru hattı bağlantısı açılır
+ * ve yanıtlar gönderim sırasıyla eşleştirilir.
+ *
+ * İstek birincil sahibe gönderilir, ona ulaşılamazsa sıradaki sahipler denenir.
+ * Hata dedektörünün şüpheli saydığı sahipler sona bırakılır; şüpheli düğüme
+ * açık bağlantı kapatılır ve bekleyen istekler diğer sahiplere yönelir.
+ * İletilen çerçeveler ClientHandler.FORWARDED_FRAME ile işaretlenir ve hedefte
+ * tekrar iletilmez.
+ *
+ * Her iletimin yanıtı "-Dforward.timeout.ms" (varsayılan 5000) içinde gelmezse
+ * sıradaki sahip denenir; böylece hata dedektörü çalışmıyorken
+ * (fault_tolerance_level 0) yanıt vermeyen bir düğüm isteği sonsuza dek bekletmez.
+ */
+final class RequestRouter implements Closeable {
+    static final String TIMEOUT_PROPERTY = "forward.timeout.ms";
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+
+    private final int serverId;
+    private final Log log;
+    private final ClusterMembership cluster;
+    private final HashRing ring;
+    private final IntSupplier replicas;
+    private final FailureDetector detector;
+    private final long timeoutMillis = Long.getLong(TIMEOUT_PROPERTY, 5000);
+    private final Map<Integer, Connection> connections = new ConcurrentHashMap<>();
+    // Bağlantı kurma düğüm başına kilitlenir; ulaşılamayan bir düğüm diğerlerine iletimi bekletmez
+    private final Map<Integer, Object> connectLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param replicas Abone başına kopya sayısı (fault_tolerance_level + 1)
+     */
+    RequestRouter(int serverId, ClusterMembership cluster, HashRing ring, IntSupplier replicas, FailureDetector detector) {
+        this.serverId = serverId;
+        this.log = Log.get(RequestRouter.class, serverId);
+        this.cluster = cluster;
+        this.ring = ring;
+        this.replicas = replicas;
+        this.detector = detector;
+    }
+
+    /**
+     * Bu düğüm abonenin sahiplerinden biriyse true
+     */
+    boolean isLocal(int subscriberId) {
+        return ring.isOwner(serverId, subscriberId, replicas.getAsInt());
+    }
+
+    /**
+     * İsteği abonenin sahibine iletir
+     * @return Sahip düğümün yanıtı; hiçbir sahibe ulaşılamazsa hata ile tamamlanır
+     */
+    CompletableFuture<Subscriber> forward(Subscriber request) {
+        return forward(request, candidates(request.getId()), 0);
+    }
+
+    // Abonenin sahipleri, şüpheli olanlar sırayı koruyarak sona alınmış
+    private int[] candidates(int subscriberId) {
+        int[] owners = ring.ownersOf(subscriberId, replicas.getAsInt());
+        boolean[] available = new boolean[owners.length];
+        int[] ordered = new int[owners.length];
+        int next = 0;
+        for (int i = 0; i < owners.length; i++) {
+            available[i] = detector.isAvailable(owners[i]);
+            if (available[i]) {
+                ordered[next++] = owners[i];
+            }
+        }
+        for (int i = 0; i < owners.length; i++) {
+            if (!available[i]) {
+                ordered[next++] = owners[i];
+            }
+        }
+        return ordered;
+    }
+
+    private CompletableFuture<Subscriber> forward(Subscriber request, int[] owners, int attempt) {
+        if (attempt == owners.length) {
+            return CompletableFuture.failedFuture(
+                new IOException("Abonenin hiçbir sahibine ulaşılamadı - ID: " + request.getId()));
+        }
+        return send(owners[attempt], ClientHandler.FORWARDED_FRAME, request.toByteArray())
+            .thenApply(RequestRouter::parseSubscriber)
+            .handle((response, error) -> error == null
+                ? CompletableFuture.completedFuture(response)
+                : forward(request, owners, attempt + 1))
+            .thenCompose(response -> response);
+    }
+
+    /**
+     * İstekleri ilk aday sahiplerine göre gruplayıp her gruba tek bir
+     * SubscriberBatch çerçevesi gönderir. Ulaşılamayan gruptaki istekler
+     * tek tek diğer sahiplere iletilir.
+     * @return Yanıtlar, istek sırasıyla
+     */
+    CompletableFuture<List<Subscriber>> forwardAll(List<Subscriber> requests) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            groups.computeIfAbsent(candidates(requests.get(i).getId())[0], node -> new ArrayList<>()).add(i);
+        }
+
+        Subscriber[] responses = new Subscriber[requests.size()];
+        List<CompletableFuture<Void>> sent = new ArrayList<>(groups.size());
+        for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            SubscriberBatch.Builder batch = SubscriberBatch.newBuilder();
+            for (int index : indexes) {
+                batch.addSubscribers(requests.get(index));
+            }
+            sent.add(send(group.getKey(), ClientHandler.BATCH_FRAME | ClientHandler.FORWARDED_FRAME, batch.build().toByteArray())
+                .thenApply(RequestRouter::parseBatch)
+                .handle((batchResponse, error) -> {
+                    if (error == null && batchResponse.size() == indexes.size()) {
+                        for (int i = 0; i < indexes.size(); i++) {
+                            responses[indexes.get(i)] = batchResponse.get(i);
+                        }
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    List<CompletableFuture<Subscriber>> retries = new ArrayList<>(indexes.size());
+                    for (int index : indexes) {
+                        retries.add(forward(requests.get(index))
+                            .thenApply(response -> responses[index] = response));
+                    }
+                    return CompletableFuture.allOf(retries.toArray(new CompletableFuture<?>[0]));
+                })
+                .thenCompose(done -> done));
+        }
+        return CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> Arrays.asList(responses));
+    }
+
+    /**
+     * Hata dedektörü düğümü şüpheli saydığında çağrılır; yarı açık kalmış
+     * bağlantıdaki istekler hata ile tamamlanıp diğer sahiplere iletilir
+     */
+    void suspect(int nodeId) {
+        Connection connection = connections.remove(nodeId);
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Connection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    private CompletableFuture<byte[]> send(int nodeId, int flags, byte[] data) {
+        try {
+            // Geç gelen yanıt yine sıradaki future ile eşleşir, zaman aşımına uğramışsa yok sayılır
+            return connection(nodeId).send(flags, data).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Hedefe açık bağlantıyı döndürür, yoksa ya da kapandıysa yenisini açar
+    private Connection connection(int nodeId) throws IOException {
+        Connection connection = connections.get(nodeId);
+        if (connection != null && !connection.closed) {
+            return connection;
+        }
+        synchronized (connectLocks.computeIfAbsent(nodeId, id -> new Object())) {
+            connection = connections.get(nodeId);
+            if (connection == null || connection.closed) {
+                ClusterMembership.Member member = cluster.get(nodeId);
+                if (member == null || nodeId == serverId) {
+                    throw new IOException("Geçersiz hedef düğüm: " + nodeId);
+                }
+                connection = new Connection(member);
+                connections.put(nodeId, connection);
+            }
+            return connection;
+        }
+    }
+
+    private static Subscriber parseSubscriber(byte[] data) {
+        try {
+            return Subscriber.parseFrom(data);
+        } catch (InvalidProtocolBufferException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static List<Subscriber> parseBatch(byte[] data) {
+        try {
+            return SubscriberBatch.parseFrom(data).getSubscribersList();
+        } catch (InvalidProtocolBufferException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Bir düğümün client portuna açılan boru hattı bağlantısı
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final Queue<CompletableFuture<byte[]>> pending = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed;
+
+        Connection(ClusterMembership.Member member) throws IOException {
+            this.socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(member.getHost(), member.getClientPort()), CONNECT_TIMEOUT_MS);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            socket.setTcpNoDelay(true);
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            Thread reader = new Thread(() -> read(in), "Server" + serverId + "-forward-" + member.getId());
+            reader.setDaemon(true);
+            reader.start();
+            log.info("İstek iletimi için Server{} bağlantısı açıldı", member.getId());
+        }
+
+        CompletableFuture<byte[]> send(int flags, byte[] data) throws IOException {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            synchronized (out) {
+                if (closed) {
+                    throw new IOException("İletim bağlantısı kapalı");
+                }
+                // Future, yanıtı okuyan thread'in göreceği sırada kuyruğa girmeli
+                pending.add(future);
+                try {
+                    out.writeInt(flags | data.length);
+                    out.write(data);
+                    out.flush();
+                } catch (IOException e) {
+                    close(e);
+                    throw e;
+                }
+            }
+            return future;
+        }
+
+        private void read(DataInputStream in) {
+            IOException failure = null;
+            try {
+                while (!closed) {
+                    byte[] response = new byte[ClientHandler.frameLength(in.readInt())];
+                    in.readFully(response);
+                    CompletableFuture<byte[]> future = pending.poll();
+                    if (future != null) {
+                        future.complete(response);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                close(failure != null ? failure : new EOFException("İletim bağlantısı kapandı"));
+            }
+        }
+
+        void close() {
+            close(new IOException("İletim bağlantısı kapatıldı"));
+        }
+
+        private void close(IOException cause) {
+            closed = true;
+            try {
+                // Yazmada bloklanmış gönderici varsa serbest kalır
+                socket.close();
+            } catch (IOException e) {
+                log.warn("İletim bağlantısı kapatılamadı: {}", e.getMessage());
+            }
+            // Kapandıktan sonra kuyruğa yeni istek girmez, kalanları hata ile tamamla
+            synchronized (out) {
+                CompletableFuture<byte[]> future;
+                while ((future = pending.poll()) != null) {
+                    future.completeExceptionally(cause);
+                }
+            }
+        }
+    }
+}
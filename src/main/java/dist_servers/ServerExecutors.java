@@ -0,0 +1,82 @@
+package dist_servers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admin, client ve peer dinleyicileri için sunucular arasında paylaşılan
+ * executor fabrikası. Her görev kendi thread'inde koşar; böylece bloklayan
+ * soket okumaları (listenToPeer, ClientHandler.run) ortak ForkJoinPool'u
+ * tüketemez.
+ *
+ * "-Dserver.threads=virtual" (varsayılan) JVM destekliyorsa görev başına
+ * virtual thread kullanır. Proje Java 11'i hedeflediği için virtual thread
+ * API'si reflection ile çağrılır; desteklenmeyen JVM'lerde ya da
+ * "-Dserver.threads=platform" verildiğinde isimlendirilmiş daemon platform
+ * thread'leri kullanılır.
+ */
+public final class ServerExecutors {
+    static final String MODE_PROPERTY = "server.threads";
+
+    private static final Log LOG = Log.get(ServerExecutors.class);
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * Görev başına bir thread açan executor döndürür
+     * @param name Thread isimlerinin öneki (örn. "Server1")
+     */
+    public static ExecutorService newPerTaskExecutor(String name) {
+        if (!"platform".equalsIgnoreCase(System.getProperty(MODE_PROPERTY, "virtual"))) {
+            ExecutorService virtual = newVirtualThreadExecutor(name);
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        return Executors.newCachedThreadPool(platformThreadFactory(name));
+    }
+
+    /**
+     * Virtual thread destekleniyorsa true döner (Java 21+)
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        if (!isVirtualThreadSupported()) {
+            return null;
+        }
+        try {
+            // Thread.ofVirtual().name(name + "-", 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("Virtual thread executor oluşturulamadı: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
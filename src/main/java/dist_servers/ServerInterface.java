@@ -4,13 +4,17 @@ import com.hasup.proto.CapacityProto.Capacity;
 import com.hasup.proto.ConfigurationProto.Configuration;
 import com.hasup.proto.SubscriberProto.Subscriber;
 
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Sunucular için ortak arayüz.
  * Her sunucu bu arayüzü implement etmek zorundadır.
  */
 public interface ServerInterface {
     /**
-     * Sunucunun ID'sini döndürür (1, 2 veya 3)
+     * Sunucunun küme üyeliğindeki düğüm ID'sini döndürür
      */
     int getServerId();
     
@@ -23,9 +27,70 @@ public interface ServerInterface {
     /**
      * Yeni bir abone ekler
      * @param subscriber Eklenecek abone bilgisi
-     * @return Ekleme başarılı ise true, değilse false
+     * @return Yazmanın sonucu (bkz. WriteResult)
+     */
+    WriteResult addSubscriber(Subscriber subscriber);
+    
+    /**
+     * Birden fazla aboneyi tek geçişte ekler/günceller ve tek birim olarak replike eder
+     * @param batch Eklenecek/güncellenecek aboneler
+     * @return Her eleman için, aynı sırayla, yazmanın sonucu
+     */
+    default WriteResult[] addSubscribers(List<Subscriber> batch) {
+        WriteResult[] results = new WriteResult[batch.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = addSubscriber(batch.get(i));
+        }
+        return results;
+    }
+    
+    /**
+     * addSubscriber'ın bloklamayan hali. Dönen future, sunucunun yazma moduna
+     * göre değişiklik kalıcı hale geldiğinde (quorum modunda peer onaylarıyla) tamamlanır.
+     */
+    default CompletableFuture<WriteResult> addSubscriberAsync(Subscriber subscriber) {
+        return CompletableFuture.completedFuture(addSubscriber(subscriber));
+    }
+    
+    /**
+     * addSubscribers'ın bloklamayan hali
+     */
+    default CompletableFuture<WriteResult[]> addSubscribersAsync(List<Subscriber> batch) {
+        return CompletableFuture.completedFuture(addSubscribers(batch));
+    }
+    
+    /**
+     * Yeni abone için küme genelinde tekil bir ID döndürür
+     */
+    int nextSubscriberId();
+    
+    /**
+     * Abone bu sunucuda tutuluyorsa true. Tutulmayan abonelere gelen
+     * istekler forwardRequest ile sahip düğüme iletilir.
      */
-    boolean addSubscriber(Subscriber subscriber);
+    default boolean ownsSubscriber(int subscriberId) {
+        return true;
+    }
+    
+    /**
+     * İsteği aboneyi tutan düğüme iletir
+     * @return Sahip düğümün yanıtı
+     */
+    CompletableFuture<Subscriber> forwardRequest(Subscriber request);
+    
+    /**
+     * İstekleri sahip düğümlere toplu olarak iletir
+     * @return Yanıtlar, istek sırasıyla
+     */
+    CompletableFuture<List<Subscriber>> forwardRequests(List<Subscriber> requests);
+    
+    /**
+     * Adres küme üyelerinden birine aitse true. ClientHandler.FORWARDED_FRAME
+     * yalnızca bu bağlantılardan kabul edilir; varsayılan uygulama hiçbirini kabul etmez.
+     */
+    default boolean isClusterMember(InetAddress address) {
+        return false;
+    }
     
     /**
      * Sunucu konfigürasyonunu günceller
@@ -53,5 +118,20 @@ public interface ServerInterface {
      */
     Subscriber getSubscriber(int id);
     
+    /**
+     * Abone sayısı last değerinden farklı olana ya da süre dolana kadar bekler.
+     * Kapasite aboneliklerinde kullanılır; varsayılan uygulama süre boyunca uyur.
+     */
+    default void awaitCapacityChange(int last, long timeoutMillis) throws InterruptedException {
+        Thread.sleep(timeoutMillis);
+    }
+    
+    /**
+     * İstek yollarının gecikme ve sayaç metrikleri
+     */
+    default Metrics getMetrics() {
+        return Metrics.global();
+    }
+    
     void startServices();
 } 
\ No newline at end of file
@@ -0,0 +1,516 @@
+package dist_servers;
+
+import com.hasup.proto.CapacityProto.Capacity;
+import com.hasup.proto.ConfigurationProto.Configuration;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import com.hasup.proto.SubscriberProto.Status;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Küme üyeliğinden kendi ID'si ve adresleriyle yapılandırılan sunucu düğümü.
+ * Peer listesi üyelikteki diğer düğümlerden oluşur; böylece aynı kodla
+ * 3, 5, 7 ya da daha fazla düğüm çalıştırılabilir.
+ *
+ * Aboneler tutarlı hash halkasıyla düğümlere bölünür: her abone
+ * fault_tolerance_level + 1 düğümde tutulur ve yalnızca bu düğümlere
+ * replike edilir. Tutulmayan abonelere gelen istekler sahibine iletilir.
+ * İlk yapılandırmada düğüm kopyalarını peer'lardan toplu olarak alır
+ * (bkz. StateTransfer); aktarım bitene kadar kendi abonelerine gelen
+ * istekleri de diğer sahiplere iletir.
+ *
+ * Yazmalar şerit kilidi altında depoya uygulanır, ardından log'a ve peer
+ * kuyruklarına eklenir; client'a yanıt kalıcılık beklendikten sonra döner.
+ * Uygulanamayan yazma ve quorum modunda sahip peer'ları önceden erişilemez
+ * olan yazma depoya dokunulmadan REJECTED, uygulanıp log ya da quorum onayı
+ * alınamayan yazma UNCONFIRMED sonucunu verir (bkz. ReplicationGroup). UNCONFIRMED
+ * yazmalar geri alınmaz; yeni abone atanan ID'sini korur.
+ *
+ * Çalıştırma: java dist_servers.ServerNode <düğüm ID> (üyelik için bkz. ClusterMembership)
+ */
+public class ServerNode implements ServerInterface {
+    private final int SERVER_ID;
+    private final int ADMIN_PORT;
+    private final int CLIENT_PORT;
+    private final int PEER_PORT;
+    private final Log log;
+    
+    private final ClusterMembership cluster;
+    private final HashRing ring;
+    private final RequestRouter router;
+    private final FailureDetector detector;
+    private final Metrics metrics;
+    private final CapacityFeed capacityFeed = new CapacityFeed();
+    private final AntiEntropy antiEntropy;
+    private final StateTransfer stateTransfer;
+    private final AtomicBoolean bootstrapStarted = new AtomicBoolean();
+    private volatile boolean serving = true;
+    private Configuration config;
+    private final SubscriberStore subscribers;
+    private final StripedLocks subscriberLocks;
+    private volatile boolean isRunning;
+    private final ReplicationGroup replication;
+    
+    private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+    private final ExecutorService executor;
+    private final WriteAheadLog wal;
+    private final SnapshotManager snapshots;
+    
+    private final IdAllocator ids;
+    
+    public ServerNode(int nodeId) {
+        this(nodeId, ClusterMembership.fromSystemProperties());
+    }
+    
+    public ServerNode(int nodeId, ClusterMembership cluster) {
+        ClusterMembership.Member self = cluster.get(nodeId);
+        if (self == null) {
+            throw new IllegalArgumentException("Düğüm " + nodeId + " küme üyeliğinde yok: " + cluster);
+        }
+        this.SERVER_ID = nodeId;
+        this.log = Log.get(ServerNode.class, nodeId);
+        this.ADMIN_PORT = self.getAdminPort();
+        this.CLIENT_PORT = self.getClientPort();
+        this.PEER_PORT = self.getPeerPort();
+        this.cluster = cluster;
+        List<Integer> nodeIds = new ArrayList<>();
+        for (ClusterMembership.Member member : cluster.getMembers()) {
+            nodeIds.add(member.getId());
+        }
+        this.ring = new HashRing(nodeIds, IdAllocator.blockSize());
+        this.ids = new IdAllocator(SERVER_ID, ring);
+        this.detector = new FailureDetector(SERVER_ID);
+        this.metrics = new Metrics(SERVER_ID);
+        this.router = new RequestRouter(SERVER_ID, cluster, ring, () -> faultToleranceLevel() + 1, detector);
+        this.executor = ServerExecutors.newPerTaskExecutor("Server" + SERVER_ID);
+        this.subscribers = SubscriberStore.create(SERVER_ID, capacityFeed::changed);
+        this.wal = WriteAheadLog.open(SERVER_ID);
+        this.snapshots = new SnapshotManager(SERVER_ID, subscribers, wal);
+        this.subscriberLocks = new StripedLocks();
+        List<PeerReplicator> replicators = new ArrayList<>();
+        for (ClusterMembership.Member peer : cluster.peersOf(SERVER_ID)) {
+            replicators.add(new PeerReplicator(SERVER_ID, peer.getId(), peer.getHost(), peer.getPeerPort(), metrics));
+        }
+        this.replication = new ReplicationGroup(SERVER_ID, replicators, ring, detector, metrics);
+        // Yanıt vermeyen peer'a bağlı yazma ve iletimler TCP zaman aşımını beklemez
+        detector.addListener(replication::suspect);
+        detector.addListener(router::suspect);
+        this.antiEntropy = new AntiEntropy(SERVER_ID, cluster, ring, subscribers,
+            () -> faultToleranceLevel() + 1, this::reconcileSubscribers);
+        this.stateTransfer = new StateTransfer(SERVER_ID, cluster, ring, subscribers,
+            replication, this::reconcileSubscribers);
+        this.isRunning = false;
+    }
+    
+    public void start() {
+        // Önceki çalışmadan kalan durumu snapshot + WAL'dan geri yükle
+        recover();
+        
+        // Başlangıçta sadece admin portu dinle
+        executor.execute(() -> {
+            try (ServerSocket adminSocket = new ServerSocket(ADMIN_PORT)) {
+                log.info("Admin bağlantıları için dinleniyor: {}", ADMIN_PORT);
+                while (true) {
+                    Socket socket = adminSocket.accept();
+                    executor.execute(new AdminHandler(socket, this));
+                }
+            } catch (IOException e) {
+                log.error("Admin socket hatası: {}", e.getMessage());
+            }
+        });
+    }
+    
+    public void startServices() {
+        if (!isRunning) {
+            this.isRunning = true;
+            
+            // Önce peer portunu aç
+            executor.execute(() -> {
+                try (ServerSocket peerSocket = new ServerSocket(PEER_PORT)) {
+                    log.info("Peer bağlantıları için dinleniyor: {}", PEER_PORT);
+                    // Diğer düğümlerden gelen bağlantıları bekle
+                    while (isRunning) {
+                        Socket socket = peerSocket.accept();
+                        executor.execute(() -> handlePeerConnection(socket));
+                    }
+                } catch (IOException e) {
+                    log.error("Peer socket hatası: {}", e.getMessage());
+                }
+            });
+
+            // Diğer sunuculara bağlan
+            connectToPeers();
+            detector.start();
+            metrics.start();
+            
+            // Replikalar arasındaki farkları periyodik olarak gider
+            antiEntropy.start();
+            
+            // Client bağlantıları için thread (client.mode=nio ise Selector tabanlı ön yüz)
+            if (NioClientServer.isEnabled()) {
+                executor.execute(new NioClientServer(SERVER_ID, CLIENT_PORT, this, () -> isRunning));
+            } else {
+                executor.execute(() -> {
+                    try (ServerSocket clientSocket = new ServerSocket(CLIENT_PORT)) {
+                        log.info("Client bağlantıları için dinleniyor: {}", CLIENT_PORT);
+                        while (isRunning) {
+                            Socket socket = clientSocket.accept();
+                            executor.execute(new ClientHandler(socket, this));
+                        }
+                    } catch (IOException e) {
+                        log.error("Client socket hatası: {}", e.getMessage());
+                    }
+                });
+            }
+
+            log.info("Servisler başlatıldı");
+        }
+    }
+    
+    public void stop() {
+        this.isRunning = false;
+        replication.close();
+        router.close();
+        detector.close();
+        metrics.close();
+        antiEntropy.close();
+        snapshots.close();
+        wal.close();
+        shutdownLatch.countDown();
+    }
+    
+    public void waitForShutdown() {
+        try {
+            shutdownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public int getServerId() {
+        return SERVER_ID;
+    }
+    
+    public ClusterMembership getCluster() {
+        return cluster;
+    }
+    
+    @Override
+    public Capacity getCapacity() {
+        return Capacity.newBuilder()
+            .setServerId(SERVER_ID)
+            .setServerStatus(subscribers.size())
+            .setTimestamp(System.currentTimeMillis())
+            .build();
+    }
+    
+    @Override
+    public WriteResult addSubscriber(Subscriber subscriber) {
+        return addSubscriberAsync(subscriber).join();
+    }
+    
+    @Override
+    public CompletableFuture<WriteResult> addSubscriberAsync(Subscriber subscriber) {
+        CompletableFuture<Long> logged;
+        CompletableFuture<Void> replicated;
+        // Yalnızca aynı şeride düşen aboneler birbirini bekler
+        Lock lock = subscriberLocks.get(subscriber.getId());
+        lock.lock();
+        try {
+            Subscriber applied = replication.canReachQuorum(subscriber.getId(), faultToleranceLevel())
+                ? applySubscriber(subscriber) : null;
+            if (applied == null) {
+                return CompletableFuture.completedFuture(WriteResult.REJECTED);
+            }
+            
+            // Değişikliği log'a ve peer kuyruklarına abone bazında sırayla ekle
+            logged = wal.append(applied);
+            replicated = syncWithPeers(applied);
+        } finally {
+            lock.unlock();
+        }
+        // Client'a yanıt, değişiklik diske (quorum modunda ayrıca peer'lara) yazılınca döner
+        return replication.whenDurable(logged, replicated);
+    }
+    
+    @Override
+    public WriteResult[] addSubscribers(List<Subscriber> batch) {
+        return addSubscribersAsync(batch).join();
+    }
+    
+    @Override
+    public CompletableFuture<WriteResult[]> addSubscribersAsync(List<Subscriber> batch) {
+        WriteResult[] results = new WriteResult[batch.size()];
+        List<Subscriber> applied = new ArrayList<>(batch.size());
+        CompletableFuture<Long> logged;
+        CompletableFuture<Void> replicated;
+        int faultToleranceLevel = faultToleranceLevel();
+        boolean[] held = subscriberLocks.lockAll(batch);
+        try {
+            for (int i = 0; i < results.length; i++) {
+                Subscriber request = batch.get(i);
+                Subscriber stored = replication.canReachQuorum(request.getId(), faultToleranceLevel)
+                    ? applySubscriber(request) : null;
+                if (stored != null) {
+                    applied.add(stored);
+                } else {
+                    results[i] = WriteResult.REJECTED;
+                }
+            }
+            logged = wal.appendAll(applied);
+            replicated = syncBatchWithPeers(applied);
+        } finally {
+            subscriberLocks.unlockAll(held);
+        }
+        // Uygulanan elemanların hepsi aynı log/replikasyon sonucunu paylaşır
+        return replication.whenDurable(logged, replicated).thenApply(outcome -> {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = outcome;
+                }
+            }
+            return results;
+        });
+    }
+    
+    // Abonenin şerit kilidi tutulurken çağrılır; saklanan aboneyi ya da başarısızsa null döner
+    private Subscriber applySubscriber(Subscriber subscriber) {
+        // Yeni abone ise
+        if (subscriber.getStatus() == Status.SUBS) {
+            // ID kontrolü
+            if (subscribers.putIfAbsent(subscriber)) {
+                return subscriber;
+            }
+        }
+        // Mevcut abone güncelleme; PEND yalnızca yanıtlarda kullanılır, saklanmaz
+        else if (subscriber.getStatus() != Status.PEND && subscribers.containsKey(subscriber.getId())) {
+            Subscriber existing = subscribers.get(subscriber.getId());
+            // Aynı milisaniyedeki güncellemeler de sıralanabilsin diye last_accessed hep artar
+            Subscriber updated = Subscriber.newBuilder(existing)
+                .setStatus(subscriber.getStatus())
+                .setLastAccessed(Math.max(System.currentTimeMillis(), existing.getLastAccessed() + 1))
+                .build();
+            
+            subscribers.put(updated);
+            return updated;
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public void setConfiguration(Configuration config) {
+        this.config = config;
+        if (config.getFaultToleranceLevel() > 0) {
+            executor.execute(this::connectToPeers);
+            if (bootstrapStarted.compareAndSet(false, true)) {
+                serving = false;
+                executor.execute(this::bootstrap);
+            }
+        }
+    }
+    
+    // Kopyaları peer'lardan alır; bitene kadar istekler diğer sahiplere iletilir
+    private void bootstrap() {
+        try {
+            stateTransfer.bootstrap(faultToleranceLevel() + 1, executor);
+        } finally {
+            serving = true;
+        }
+    }
+    
+    private void connectToPeers() {
+        // Her peer için replikasyon göndericisini başlat (bağlanamazsa kendisi tekrar dener)
+        replication.start();
+    }
+    
+    // Peer'dan gelen değişiklikleri uygular; dönen future log'a yazılınca tamamlanır.
+    // Toplu aktarımla gelmiş daha yeni bir kaydın üzerine geç gelen eski değişiklik yazılmaz.
+    private CompletableFuture<Long> updateSubscribers(List<Subscriber> batch) {
+        List<Subscriber> applied = new ArrayList<>(batch.size());
+        boolean[] held = subscriberLocks.lockAll(batch);
+        try {
+            for (Subscriber subscriber : batch) {
+                Subscriber existing = subscribers.get(subscriber.getId());
+                if (existing == null || !AntiEntropy.isNewer(existing, subscriber)) {
+                    subscribers.put(subscriber);
+                    applied.add(subscriber);
+                }
+            }
+            return wal.appendAll(applied);
+        } finally {
+            subscriberLocks.unlockAll(held);
+        }
+    }
+    
+    // Anti-entropy ile gelen kayıtlardan yereldekinden yeni olanları uygular
+    private CompletableFuture<Long> reconcileSubscribers(List<Subscriber> batch) {
+        List<Subscriber> applied = new ArrayList<>();
+        boolean[] held = subscriberLocks.lockAll(batch);
+        try {
+            for (Subscriber subscriber : batch) {
+                Subscriber existing = subscribers.get(subscriber.getId());
+                if (existing == null || AntiEntropy.isNewer(subscriber, existing)) {
+                    subscribers.put(subscriber);
+                    applied.add(subscriber);
+                }
+            }
+            return wal.appendAll(applied);
+        } finally {
+            subscriberLocks.unlockAll(held);
+        }
+    }
+    
+    // Değişikliği peer kuyruklarına ekler; gönderim replikasyon thread'lerinde yapılır.
+    // Dönen future yazma modunun gerektirdiği peer onayları gelince tamamlanır.
+    private CompletableFuture<Void> syncWithPeers(Subscriber subscriber) {
+        return replication.replicate(subscriber, faultToleranceLevel());
+    }
+    
+    private CompletableFuture<Void> syncBatchWithPeers(List<Subscriber> batch) {
+        return replication.replicateAll(batch, faultToleranceLevel());
+    }
+    
+    private int faultToleranceLevel() {
+        Configuration current = config;
+        return current != null ? current.getFaultToleranceLevel() : 0;
+    }
+    
+    private void recover() {
+        try {
+            snapshots.recover();
+            
+            // Kiralama dosyası yoksa yeni ID'ler kurtarılan en büyük ID'nin bloğundan sonra başlamalı
+            AtomicInteger maxId = new AtomicInteger();
+            subscribers.forEach(s -> maxId.accumulateAndGet(s.getId(), Math::max));
+            ids.reserveUpTo(maxId.get());
+        } catch (IOException e) {
+            log.error("Durum geri yüklenemedi: {}", e.getMessage());
+        }
+        snapshots.start();
+    }
+    
+    @Override
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+    
+    /**
+     * ID'ler bu düğümün kiraladığı bloklardan verilir; blokların birincil sahibi
+     * bu düğüm olduğu için yeni abone iletilmeden burada oluşturulur
+     */
+    @Override
+    public int nextSubscriberId() {
+        return ids.next();
+    }
+    
+    @Override
+    public int getActiveSubscriberCount() {
+        return subscribers.countByStatus(Status.ONLN);
+    }
+    
+    @Override
+    public boolean ownsSubscriber(int subscriberId) {
+        return serving && router.isLocal(subscriberId);
+    }
+    
+    @Override
+    public boolean isClusterMember(InetAddress address) {
+        return cluster.isMemberAddress(address);
+    }
+    
+    @Override
+    public CompletableFuture<Subscriber> forwardRequest(Subscriber request) {
+        return router.forward(request);
+    }
+    
+    @Override
+    public CompletableFuture<List<Subscriber>> forwardRequests(List<Subscriber> requests) {
+        return router.forwardAll(requests);
+    }
+    
+    @Override
+    public Subscriber getSubscriber(int id) {
+        return subscribers.get(id);
+    }
+    
+    @Override
+    public void awaitCapacityChange(int last, long timeoutMillis) throws InterruptedException {
+        capacityFeed.await(this::getSubscriberCount, last, timeoutMillis);
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+    
+    @Override
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    private void handlePeerConnection(Socket socket) {
+        try {
+            // El sıkışma: peer'ın ID'si, protokol sürümü ve ortak özellikler
+            PeerCodec codec = PeerCodec.accept(socket, SERVER_ID);
+            
+            // Bağlantının türü ilk çerçeveden anlaşılır
+            PeerCodec.Frame first = codec.peek();
+            if (first != null && first.type == PeerCodec.TYPE_MERKLE_ROOT) {
+                try {
+                    antiEntropy.serve(codec);
+                } finally {
+                    codec.close();
+                }
+                return;
+            }
+            if (first != null && first.type == PeerCodec.TYPE_TRANSFER_REQUEST) {
+                try {
+                    stateTransfer.serve(codec);
+                } finally {
+                    codec.close();
+                }
+                return;
+            }
+            log.info("Peer{} bağlandı", codec.getPeerId());
+            
+            // Bağlantı kapanana kadar gelen değişiklikleri uygula ve onayla
+            PeerReplicator.receive(SERVER_ID, codec, this::updateSubscribers, () -> isRunning, detector, metrics);
+        } catch (IOException e) {
+            log.warn("Peer bağlantısı hatası: {}", e.getMessage());
+            // El sıkışma tamamlanmadıysa soket codec'e devredilmemiştir
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+    
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Kullanım: java dist_servers.ServerNode <düğüm ID>");
+            System.exit(1);
+        }
+        run(Integer.parseInt(args[0]));
+    }
+    
+    /**
+     * Düğümü oluşturur, admin portunu açar ve kapanana kadar bekler
+     */
+    static void run(int nodeId) {
+        ServerNode server = new ServerNode(nodeId);
+        
+        // Sadece admin portunu dinlemeye başla
+        server.start();  // Bu sadece admin portunu açacak
+        server.log.info("Admin portu dinleniyor: {}", server.ADMIN_PORT);
+        
+        // Ana thread'i beklet
+        server.waitForShutdown();
+    }
+}
@@ -0,0 +1,32 @@
+package dist_servers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Sunucuların kalıcı dosyalarının (abone deposu, log, snapshot) dizinleri.
+ * Kök dizin "-Ddata.dir" ile verilir, varsayılan "data"dır; her sunucu
+ * altında kendi "serverN" dizinini kullanır.
+ */
+final class ServerPaths {
+    static final String DATA_DIR_PROPERTY = "data.dir";
+
+    private ServerPaths() {
+    }
+
+    /**
+     * Sunucunun veri dizinini döndürür, yoksa oluşturur
+     */
+    static Path dataDir(int serverId) {
+        Path dir = Paths.get(System.getProperty(DATA_DIR_PROPERTY, "data"), "server" + serverId);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Veri dizini oluşturulamadı: " + dir, e);
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,282 @@
+package dist_servers;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Abone deposunun periyodik snapshot'larını alır ve açılışta durumu
+ * "son snapshot + WAL kuyruğu" olarak geri yükler.
+ *
+ * Snapshot dosyası "snapshot-<lsn>.snap" adını taşır ve şu biçimdedir:
+ * [int magic][int version][long lsn][long kayıt sayısı] ardından
+ * uzunluk önekli (writeDelimitedTo uyumlu) Subscriber kayıtları.
+ *
+ * Snapshot alınırken yazmalar durdurulmaz: depo kayıtları segment ya da sayfa
+ * parçaları halinde kilit altında kopyalar, dosyaya yazma kilit dışında
+ * yapılır (bkz. SubscriberStore.forEach). Başlangıçta okunan LSN'e kadarki
+ * tüm değişiklikler depoya uygulanmış olduğundan, açılışta bu LSN'den
+ * sonraki WAL kayıtlarının sırayla yeniden uygulanması yeterlidir.
+ * Son iki snapshot saklanır. WAL segmentleri yalnızca saklanan en eski
+ * snapshot'ın LSN'ine kadar silinir; böylece en yeni snapshot bozuksa bir
+ * öncekinden WAL ile eksiksiz geri dönülebilir.
+ *
+ * WAL kapalıysa ("-Dwal.enabled=false") LSN verilmez; her aralıkta, bir
+ * öncekinden bir büyük sıra numarasıyla snapshot alınır ve açılışta yalnızca
+ * son snapshot yüklenir.
+ *
+ * Aralık "-Dsnapshot.interval.seconds" ile verilir (varsayılan 60, 0 kapatır).
+ */
+public class SnapshotManager implements Closeable {
+    static final String INTERVAL_PROPERTY = "snapshot.interval.seconds";
+
+    private static final int MAGIC = 0x48534e50; // "HSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int RETAINED_SNAPSHOTS = 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private final int serverId;
+    private final Log log;
+    private final Path directory;
+    private final SubscriberStore store;
+    private final WriteAheadLog wal;
+    private final ScheduledExecutorService scheduler;
+    private long lastSnapshotLsn = -1;
+
+    public SnapshotManager(int serverId, SubscriberStore store, WriteAheadLog wal) {
+        this.serverId = serverId;
+        this.log = Log.get(SnapshotManager.class, serverId);
+        this.directory = ServerPaths.dataDir(serverId).resolve("snapshots");
+        this.store = store;
+        this.wal = wal;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Server" + serverId + "-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Son geçerli snapshot'ı yükler ve ardından gelen WAL kayıtlarını uygular.
+     * Depo zaten doluysa (örn. kalıcı mmap deposu) snapshot yüklenmez,
+     * yalnızca WAL kuyruğu uygulanır. Yarım yüklenen snapshot silinip bir
+     * öncekine dönülür; WAL dönülen snapshot'tan sonraki kayıtları artık
+     * içermiyorsa kayıp sessizce yutulmaz, IllegalStateException atılır.
+     * @return Geri yükleme süresi (ms)
+     */
+    public long recover() throws IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(directory);
+
+        boolean loadSnapshot = store.size() == 0;
+        long snapshotLsn = 0;
+        long loaded = 0;
+        for (Path snapshot : snapshotsNewestFirst()) {
+            try {
+                snapshotLsn = readLsn(snapshot);
+                if (loadSnapshot) {
+                    loaded = load(snapshot);
+                }
+                lastSnapshotLsn = snapshotLsn;
+                break;
+            } catch (IOException e) {
+                // Bozuk snapshot: yüklenen kısmı at, bir öncekine dön
+                log.warn("Snapshot okunamadı ({}): {}", snapshot.getFileName(), e.getMessage());
+                if (loadSnapshot) {
+                    store.clear();
+                }
+                snapshotLsn = 0;
+            }
+        }
+        if (loadSnapshot && !wal.covers(snapshotLsn)) {
+            throw new IllegalStateException("WAL LSN " + snapshotLsn
+                + " sonrasını içermiyor, durum eksiksiz geri yüklenemez: " + directory);
+        }
+
+        long replayed = wal.replay(snapshotLsn, store::put);
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Durum geri yüklendi - snapshot {} kayıt (LSN {}), WAL {} kayıt, süre {} ms",
+            loaded, snapshotLsn, replayed, elapsed);
+        return elapsed;
+    }
+
+    /**
+     * Periyodik snapshot almaya başlar
+     */
+    public void start() {
+        long interval = Long.getLong(INTERVAL_PROPERTY, 60);
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    log.error("Snapshot alınamadı: {}", e.getMessage());
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Deponun snapshot'ını alır, eski snapshot'ları ve kapsanan WAL segmentlerini siler
+     * @return Snapshot'ın LSN'i
+     */
+    public synchronized long snapshot() throws IOException {
+        long start = System.currentTimeMillis();
+        long lsn;
+        if (wal.isEnabled()) {
+            lsn = wal.getLastAssignedLsn();
+            if (lsn == lastSnapshotLsn) {
+                // Son snapshot'tan beri değişiklik yok
+                return lsn;
+            }
+        } else {
+            // Değişiklik izlenemez; dosya adları sıralı kalsın diye sıra numarası artırılır
+            lsn = lastSnapshotLsn + 1;
+        }
+        // Bundan sonraki kayıtlar yeni segmente gitsin ki eskisi silinebilsin
+        wal.roll();
+
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+        Path tmp = directory.resolve(target.getFileName() + ".tmp");
+        long count = write(tmp, lsn);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSnapshotLsn = lsn;
+
+        List<Path> snapshots = snapshotsNewestFirst();
+        for (int i = RETAINED_SNAPSHOTS; i < snapshots.size(); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        // Saklanan en eski snapshot'tan sonraki kayıtlar WAL'da kalmalı
+        long oldestRetainedLsn = lsnOf(snapshots.get(Math.min(snapshots.size(), RETAINED_SNAPSHOTS) - 1));
+        SubscriberStore backing = store instanceof CountingSubscriberStore
+            ? ((CountingSubscriberStore) store).getDelegate()
+            : store;
+        if (backing instanceof MappedSubscriberStore) {
+            // Depo açılışta snapshot yerine kendi dosyalarından yüklenir, silmeden önce diske yaz
+            ((MappedSubscriberStore) backing).force();
+        }
+        wal.deleteSegmentsUpTo(oldestRetainedLsn);
+
+        log.info("Snapshot alındı - {} kayıt (LSN {}), {} ms", count, lsn, System.currentTimeMillis() - start);
+        return lsn;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private long write(Path path, long lsn) throws IOException {
+        long[] count = new long[1];
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            CodedOutputStream coded = CodedOutputStream.newInstance(out, BUFFER_SIZE);
+            coded.writeFixed32NoTag(0); // başlık en sonda yazılır
+            coded.writeFixed32NoTag(0);
+            coded.writeFixed64NoTag(0);
+            coded.writeFixed64NoTag(0);
+
+            try {
+                store.forEach(subscriber -> {
+                    try {
+                        coded.writeUInt32NoTag(subscriber.getSerializedSize());
+                        subscriber.writeTo(coded);
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            coded.flush();
+            out.flush();
+
+            // Kayıt sayısı ancak tüm kayıtlar yazıldıktan sonra belli olur
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(lsn)
+                .putLong(count[0]);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        return count[0];
+    }
+
+    // Dosya adındaki LSN; başlık okunmaz, bozuk snapshot'ın da WAL kapsamı korunur
+    private static long lsnOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private long readLsn(Path snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshot))) {
+            checkHeader(in, snapshot);
+            return in.readLong();
+        }
+    }
+
+    private long load(Path snapshot) throws IOException {
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            DataInputStream header = new DataInputStream(in);
+            checkHeader(header, snapshot);
+            header.readLong();
+            long count = header.readLong();
+
+            CodedInputStream coded = CodedInputStream.newInstance(in, BUFFER_SIZE);
+            coded.setSizeLimit(Integer.MAX_VALUE);
+            for (long i = 0; i < count; i++) {
+                if (coded.isAtEnd()) {
+                    throw new EOFException("Snapshot eksik: " + i + "/" + count + " kayıt");
+                }
+                int length = coded.readRawVarint32();
+                int limit = coded.pushLimit(length);
+                store.put(Subscriber.parseFrom(coded));
+                coded.popLimit(limit);
+                // Büyük dosyalarda CodedInputStream boyut sayacının taşmasını önle
+                coded.resetSizeCounter();
+            }
+            return count;
+        }
+    }
+
+    private static void checkHeader(DataInputStream in, Path snapshot) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Geçersiz snapshot dosyası: " + snapshot);
+        }
+    }
+
+    private List<Path> snapshotsNewestFirst() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> snapshots = files
+                .filter(p -> p.getFileName().toString().startsWith(PREFIX))
+                .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+            Collections.reverse(snapshots);
+            return snapshots;
+        }
+    }
+}
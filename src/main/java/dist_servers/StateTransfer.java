@@ -0,0 +1,200 @@
+package dist_servers;
+
+import com.hasup.proto.StateTransferProto.TransferEnd;
+import com.hasup.proto.StateTransferProto.TransferRequest;
+import com.hasup.proto.SubscriberBatchProto.SubscriberBatch;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * Geç başlayan ya da yeniden başlatılan düğümün kopyalarını peer'lardan
+ * toplu olarak almasını sağlar.
+ *
+ * Katılan düğüm ulaşabildiği her peer'a ayrı bir peer bağlantısı açar ve
+ * TransferRequest gönderir. Peer önce katılan düğüme replikasyon
+ * kuyruğundaki son sıra numarasını (S) kaydeder, ardından iki düğümün de
+ * sahibi olduğu bölümlerdeki tüm kayıtları sıkıştırılmış SubscriberBatch
+ * parçaları halinde gönderir ve TransferEnd{S} ile bitirir. S'e kadarki
+ * değişiklikler peer'ın deposunda olduğu için gönderilen kayıtlara dahildir.
+ * Katılan düğüm kayıtları son yazan kazanır kuralıyla uygulayıp log'a
+ * yazınca TransferEnd'i geri gönderir; peer S'e kadarki replikasyon
+ * kayıtlarını onaylanmış sayar ve canlı replikasyon S'ten sonrasıyla devam
+ * eder. Aktarım sürerken gelen değişiklikler replikasyonla ayrıca akar.
+ *
+ * Aktarımı yarıda kalan bölümler bir sonraki anti-entropy turunda tamamlanır.
+ */
+final class StateTransfer {
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int SESSION_TIMEOUT_MS = 60_000;
+    private static final int CHUNK_SIZE = 10_000;
+
+    private final int serverId;
+    private final Log log;
+    private final ClusterMembership cluster;
+    private final HashRing ring;
+    private final SubscriberStore store;
+    private final ReplicationGroup replication;
+    private final Function<List<Subscriber>, CompletableFuture<Long>> reconcile;
+
+    /**
+     * @param reconcile Gelen kayıtlardan yereldekinden yeni olanları uygulayıp log'a ekleyen fonksiyon
+     */
+    StateTransfer(int serverId, ClusterMembership cluster, HashRing ring, SubscriberStore store,
+                  ReplicationGroup replication, Function<List<Subscriber>, CompletableFuture<Long>> reconcile) {
+        this.serverId = serverId;
+        this.log = Log.get(StateTransfer.class, serverId);
+        this.cluster = cluster;
+        this.ring = ring;
+        this.store = store;
+        this.replication = replication;
+        this.reconcile = reconcile;
+    }
+
+    /**
+     * Tüm peer'lardan paralel olarak aktarım yapar, hepsi bitince döner
+     * @param copies Abone başına kopya sayısı (fault_tolerance_level + 1)
+     * @return Alınan kayıt sayısı
+     */
+    long bootstrap(int copies, Executor executor) {
+        long started = System.nanoTime();
+        List<CompletableFuture<Long>> pulls = new ArrayList<>();
+        for (ClusterMembership.Member peer : cluster.peersOf(serverId)) {
+            pulls.add(CompletableFuture.supplyAsync(() -> pullFrom(peer, copies), executor));
+        }
+        long received = 0;
+        int sources = 0;
+        for (CompletableFuture<Long> pull : pulls) {
+            long count = pull.join();
+            if (count >= 0) {
+                received += count;
+                sources++;
+            }
+        }
+        log.info("Toplu durum aktarımı tamamlandı - {} peer'dan {} kayıt, {} ms",
+            sources, received, (System.nanoTime() - started) / 1_000_000);
+        return received;
+    }
+
+    // Alınan kayıt sayısı; peer'a ulaşılamazsa ya da aktarım yarıda kalırsa -1
+    private long pullFrom(ClusterMembership.Member peer, int copies) {
+        try (PeerCodec codec = PeerCodec.open(peer, serverId, CONNECT_TIMEOUT_MS, SESSION_TIMEOUT_MS)) {
+            if (!codec.supports(PeerCodec.FEATURE_STATE_TRANSFER)) {
+                return -1;
+            }
+            codec.write(PeerCodec.TYPE_TRANSFER_REQUEST, TransferRequest.newBuilder().setReplicas(copies).build());
+            codec.flush();
+
+            long count = 0;
+            List<CompletableFuture<Long>> logged = new ArrayList<>();
+            while (true) {
+                PeerCodec.Frame frame = expect(codec, PeerCodec.TYPE_TRANSFER_CHUNK, PeerCodec.TYPE_TRANSFER_END);
+                if (frame.type == PeerCodec.TYPE_TRANSFER_END) {
+                    // Peer, kayıtlar log'a yazılmadan replikasyon kuyruğunu atlamamalı
+                    CompletableFuture.allOf(logged.toArray(new CompletableFuture<?>[0])).join();
+                    codec.write(PeerCodec.TYPE_TRANSFER_END, TransferEnd.parseFrom(frame.payload));
+                    codec.flush();
+                    return count;
+                }
+                List<Subscriber> records = SubscriberBatch.parseFrom(frame.payload).getSubscribersList();
+                logged.add(reconcile.apply(records));
+                count += records.size();
+            }
+        } catch (ConnectException e) {
+            return -1;  // Peer henüz çalışmıyor
+        } catch (IOException | RuntimeException e) {
+            log.warn("Server{} ile toplu durum aktarımı yapılamadı: {}", peer.getId(), e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Peer portuna gelen, ilk çerçevesi TYPE_TRANSFER_REQUEST olan bağlantıyı
+     * cevaplar. Aktarım bitene kadar çağıran thread'de çalışır.
+     */
+    void serve(PeerCodec codec) throws IOException {
+        codec.getSocket().setSoTimeout(SESSION_TIMEOUT_MS);
+        TransferRequest request = TransferRequest.parseFrom(expect(codec, PeerCodec.TYPE_TRANSFER_REQUEST).payload);
+        int joiner = codec.getPeerId();
+        long started = System.nanoTime();
+
+        // Sıra numarası kayıtlar okunmadan önce alınmalı
+        PeerReplicator replicator = replication.getReplicator(joiner);
+        long sequence = replicator != null ? replicator.getLastSequence() : 0;
+
+        // Depoyu kilitli tutmamak için önce ID'ler toplanır, kayıtlar gönderirken okunur
+        int[] ids = sharedIds(AntiEntropy.sharedBy(ring, serverId, joiner, request.getReplicas()));
+        long count = 0;
+        List<Subscriber> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (int id : ids) {
+            Subscriber subscriber = store.get(id);
+            if (subscriber == null) {
+                continue;
+            }
+            chunk.add(subscriber);
+            if (chunk.size() == CHUNK_SIZE) {
+                count += writeChunk(codec, chunk);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            count += writeChunk(codec, chunk);
+        }
+        codec.write(PeerCodec.TYPE_TRANSFER_END, TransferEnd.newBuilder().setSequence(sequence).setCount(count).build());
+        codec.flush();
+
+        expect(codec, PeerCodec.TYPE_TRANSFER_END);
+        if (replicator != null) {
+            replicator.coveredUpTo(sequence);
+        }
+        log.info("Server{} için toplu durum aktarımı - {} kayıt, {} ms, replikasyon {} sıra numarasından devam ediyor",
+            joiner, count, (System.nanoTime() - started) / 1_000_000, sequence + 1);
+    }
+
+    // Seçilen bölümlerdeki ID'ler; her bölüm için sahiplik bir kez hesaplanır
+    private int[] sharedIds(LongPredicate shared) {
+        Map<Long, Boolean> partitions = new HashMap<>();
+        int[][] ids = {new int[1024]};
+        int[] count = {0};
+        store.forEach(subscriber -> {
+            int id = subscriber.getId();
+            if (partitions.computeIfAbsent(ring.partitionOf(id), shared::test)) {
+                if (count[0] == ids[0].length) {
+                    ids[0] = Arrays.copyOf(ids[0], count[0] * 2);
+                }
+                ids[0][count[0]++] = id;
+            }
+        });
+        return Arrays.copyOf(ids[0], count[0]);
+    }
+
+    private static int writeChunk(PeerCodec codec, List<Subscriber> chunk) throws IOException {
+        int size = chunk.size();
+        codec.writeCompressed(PeerCodec.TYPE_TRANSFER_CHUNK, SubscriberBatch.newBuilder().addAllSubscribers(chunk).build());
+        chunk.clear();
+        return size;
+    }
+
+    private static PeerCodec.Frame expect(PeerCodec codec, byte... types) throws IOException {
+        PeerCodec.Frame frame = codec.read();
+        if (frame == null) {
+            throw new EOFException("Durum aktarımı bağlantısı kapandı");
+        }
+        for (byte type : types) {
+            if (frame.type == type) {
+                return frame;
+            }
+        }
+        throw new IOException("Beklenmeyen durum aktarımı çerçevesi: " + frame.type);
+    }
+}
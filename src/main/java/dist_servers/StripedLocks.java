@@ -0,0 +1,69 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Abone ID'lerini sabit sayıda kilide dağıtır. Aynı aboneye yapılan
+ * yazmalar aynı kilidi paylaştığı için sıralı kalır (depo ve WAL sırası
+ * tutarlıdır), farklı şeritlere düşen yazmalar ise paralel ilerler.
+ */
+final class StripedLocks {
+    private static final int DEFAULT_STRIPES = 256;
+
+    private final ReentrantLock[] locks;
+
+    StripedLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes Kilit sayısı, ikinin kuvvetine yuvarlanır
+     */
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * ID'nin düştüğü şeridin kilidi
+     */
+    ReentrantLock get(int id) {
+        return locks[stripe(id)];
+    }
+
+    /**
+     * Listedeki abonelerin tüm şeritlerini kilitler. Kilitler her zaman artan
+     * şerit sırasıyla alındığı için eşzamanlı toplu yazmalar kilitlenmez.
+     * @return unlockAll'a verilecek şerit işaretleri
+     */
+    boolean[] lockAll(List<Subscriber> batch) {
+        boolean[] held = new boolean[locks.length];
+        for (Subscriber subscriber : batch) {
+            held[stripe(subscriber.getId())] = true;
+        }
+        for (int i = 0; i < held.length; i++) {
+            if (held[i]) {
+                locks[i].lock();
+            }
+        }
+        return held;
+    }
+
+    void unlockAll(boolean[] held) {
+        for (int i = held.length - 1; i >= 0; i--) {
+            if (held[i]) {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    private int stripe(int id) {
+        return IntSubscriberStore.hash(id) & (locks.length - 1);
+    }
+}
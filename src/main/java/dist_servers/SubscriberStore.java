@@ -0,0 +1,113 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sunucuların abone kayıtlarını tuttuğu depo arayüzü.
+ * Uygulamalar thread-safe olmalıdır; farklı anahtarlara yapılan eşzamanlı
+ * yazmalar birbirini bozmamalıdır.
+ *
+ * Uygulama "-Dsubscriber.store" ile seçilir:
+ * "map" (varsayılan) ConcurrentHashMap tabanlı, "int" primitive dizili,
+ * "mmap" veri dizininde belleğe eşlenmiş dosyalarla çalışan heap dışı depo.
+ * Seçilen depo, durum sayaçlarını tutan CountingSubscriberStore ile sarılır.
+ */
+public interface SubscriberStore {
+    String STORE_PROPERTY = "subscriber.store";
+
+    /**
+     * ID'ye göre aboneyi döndürür, yoksa null
+     */
+    Subscriber get(int id);
+
+    /**
+     * ID'ye sahip abone varsa true döner
+     */
+    boolean containsKey(int id);
+
+    /**
+     * Aboneyi ekler ya da üzerine yazar. Güncelleme sık yapıldığından önceki
+     * kayıt yerine yalnızca durumu döner; depolar kayıt nesnesi oluşturmaz.
+     * @return Önceki kaydın durumu (tanınmayan değerler UNRECOGNIZED), kayıt yoksa null
+     */
+    Status put(Subscriber subscriber);
+
+    /**
+     * Aynı ID'ye sahip kayıt yoksa aboneyi ekler
+     * @return Ekleme yapıldıysa true
+     */
+    boolean putIfAbsent(Subscriber subscriber);
+
+    /**
+     * Tüm kayıtları siler (örn. yarım yüklenen bir snapshot'ı atmak için)
+     */
+    void clear();
+
+    /**
+     * Toplam kayıt sayısı
+     */
+    int size();
+
+    /**
+     * Tüm kayıtları gezer. Gezinme sırasında yapılan yazmaların görünmesi garanti değildir.
+     * Geri çağrı depo kilitleri tutulmadan çalıştırılır; uzun sürse de yazmaları
+     * durdurmaz. Geri çağrı içinden depoya yazılmamalıdır.
+     */
+    void forEach(Consumer<Subscriber> action);
+
+    /**
+     * Verilen durumdaki kayıt sayısı. Varsayılan uygulama tüm kayıtları gezer,
+     * CountingSubscriberStore sabit zamanda cevaplar.
+     */
+    default int countByStatus(Status status) {
+        AtomicInteger count = new AtomicInteger();
+        forEach(subscriber -> {
+            if (subscriber.getStatus() == status) {
+                count.incrementAndGet();
+            }
+        });
+        return count.get();
+    }
+
+    /**
+     * Depoda saklanan durum numarasını enum'a çevirir; tanınmayan değerler UNRECOGNIZED olur
+     */
+    static Status statusOf(int value) {
+        Status status = Status.forNumber(value);
+        return status != null ? status : Status.UNRECOGNIZED;
+    }
+
+    /**
+     * subscriber.store sistem özelliğine göre depo oluşturur
+     * @param serverId Depoyu kullanacak sunucunun ID'si
+     */
+    static SubscriberStore create(int serverId) {
+        return create(serverId, () -> { });
+    }
+
+    /**
+     * @param onSizeChanged Yeni kayıt eklendiğinde, yazan thread'de çağrılır
+     */
+    static SubscriberStore create(int serverId, Runnable onSizeChanged) {
+        String type = System.getProperty(STORE_PROPERTY, "map");
+        SubscriberStore store;
+        switch (type.toLowerCase()) {
+            case "map":
+                store = new MapSubscriberStore();
+                break;
+            case "int":
+                store = new IntSubscriberStore();
+                break;
+            case "mmap":
+                store = new MappedSubscriberStore(ServerPaths.dataDir(serverId));
+                break;
+            default:
+                throw new IllegalArgumentException("Bilinmeyen abone deposu: " + type);
+        }
+        return new CountingSubscriberStore(store, onSizeChanged);
+    }
+}
@@ -0,0 +1,435 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Subscriber;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Abone değişiklikleri için yalnızca sona ekleme yapılan write-ahead log.
+ *
+ * Her kayda artan bir log sıra numarası (LSN) verilir. Kayıtlar tek bir
+ * yazıcı thread'i tarafından diske yazılır; o anda kuyrukta biriken tüm
+ * kayıtlar tek bir write + fsync ile kalıcı hale getirilir (group commit).
+ * Böylece eşzamanlı istekler bir disk senkronizasyonunu paylaşır.
+ *
+ * Kayıt biçimi: [int uzunluk][long lsn][int crc32][Subscriber baytları].
+ * Log "wal-<ilk lsn>.log" adlı segmentlere bölünür; yarım yazılmış son
+ * kayıt açılışta kesilip atılır. Bir grup yazılamazsa segment grubun
+ * başladığı konuma geri kesilir; bu da başarısız olursa log kalıcı olarak
+ * hatalı sayılır ve sonraki tüm eklemeler reddedilir, böylece yırtık bir
+ * kaydın arkasına yazılıp tekrar oynatmada kaybolacak kayıt kalmaz.
+ *
+ * "-Dwal.enabled=false" ile kapatılabilir; bu durumda append hemen tamamlanır.
+ */
+public class WriteAheadLog implements Closeable {
+    static final String ENABLED_PROPERTY = "wal.enabled";
+
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final int serverId;
+    private final Log log;
+    private final Path directory;
+    private final boolean enabled;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile boolean rollRequested;
+    private volatile IOException failure;
+    private FileChannel channel;
+    private long segmentBytes;
+    private long nextLsn;
+    private volatile long durableLsn;
+
+    private WriteAheadLog(int serverId, Path directory, boolean enabled) {
+        this.serverId = serverId;
+        this.log = Log.get(WriteAheadLog.class, serverId);
+        this.directory = directory;
+        this.enabled = enabled;
+        this.writer = new Thread(this::writeLoop, "Server" + serverId + "-wal");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Sunucunun veri dizinindeki log'u açar ve yazıcı thread'ini başlatır
+     */
+    public static WriteAheadLog open(int serverId) {
+        boolean enabled = Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+        WriteAheadLog wal = new WriteAheadLog(serverId, ServerPaths.dataDir(serverId).resolve("wal"), enabled);
+        if (enabled) {
+            try {
+                wal.openForAppend();
+            } catch (IOException e) {
+                throw new UncheckedIOException("WAL açılamadı: " + wal.directory, e);
+            }
+            wal.running = true;
+            wal.writer.start();
+        }
+        return wal;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Değişikliği log kuyruğuna ekler. Dönen future kayıt diske
+     * senkronize edildiğinde kaydın LSN'i ile tamamlanır.
+     * Kayıtlar çağrı sırasıyla yazılır.
+     */
+    public CompletableFuture<Long> append(Subscriber subscriber) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (!running) {
+                future.completeExceptionally(new IOException("WAL kapalı"));
+                return future;
+            }
+            if (failure != null) {
+                future.completeExceptionally(new IOException("WAL yazılamıyor", failure));
+                return future;
+            }
+            queue.add(new Entry(nextLsn++, subscriber.toByteArray(), future));
+        }
+        return future;
+    }
+
+    /**
+     * Listeyi sırayla ekler; dönen future son kayıt kalıcı olunca tamamlanır
+     */
+    public CompletableFuture<Long> appendAll(List<Subscriber> subscribers) {
+        CompletableFuture<Long> last = CompletableFuture.completedFuture(0L);
+        synchronized (this) {
+            for (Subscriber subscriber : subscribers) {
+                last = append(subscriber);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * append ile dönen future'ı bekler
+     * @return Kayıt kalıcı hale geldiyse true, yazma hatası olduysa false
+     */
+    public boolean await(CompletableFuture<Long> logged) {
+        try {
+            logged.join();
+            return true;
+        } catch (CompletionException e) {
+            log.error("WAL yazılamadı: {}", e.getCause().getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Diske senkronize edilmiş son kaydın LSN'i
+     */
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+    
+    /**
+     * Şimdiye kadar verilmiş son LSN. Bu LSN'e kadarki tüm değişiklikler
+     * append çağrısından önce depoya uygulanmış olur.
+     */
+    public synchronized long getLastAssignedLsn() {
+        return nextLsn - 1;
+    }
+    
+    /**
+     * Sonraki grubun yeni bir segmente yazılmasını ister, böylece mevcut
+     * segment bir snapshot'tan sonra silinebilir hale gelir
+     */
+    public void roll() {
+        rollRequested = true;
+    }
+    
+    /**
+     * Tüm kayıtları verilen LSN'e kadar olan (snapshot'a dahil edilmiş) segmentleri siler
+     */
+    public void deleteSegmentsUpTo(long lsn) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        List<Path> segments = segments();
+        // Son segment hâlâ yazılıyor; bir segment ancak sonrakinin ilk LSN'i lsn + 1'den küçük/eşitse tamamen kapsanır
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) - 1 <= lsn) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * afterLsn'den sonraki tüm kayıtlar hâlâ log'da ise true döner; aradaki
+     * segmentler silindiyse bu LSN'den yeniden oynatma kayıt kaybettirir
+     */
+    public boolean covers(long afterLsn) throws IOException {
+        if (!enabled) {
+            return true;
+        }
+        List<Path> segments = segments();
+        return segments.isEmpty() || firstLsn(segments.get(0)) <= afterLsn + 1;
+    }
+
+    /**
+     * Log'daki kayıtları sırayla okur ve LSN'i afterLsn'den büyük olanları uygular
+     * @return Uygulanan kayıt sayısı
+     */
+    public long replay(long afterLsn, Consumer<Subscriber> action) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        long applied = 0;
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            // Tamamı afterLsn'e kadar olan segmentleri okumadan atla
+            if (i + 1 < segments.size() && firstLsn(segments.get(i + 1)) - 1 <= afterLsn) {
+                continue;
+            }
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segments.get(i)));
+            long[] lsn = new long[1];
+            byte[] payload;
+            while ((payload = readRecord(data, lsn)) != null) {
+                if (lsn[0] > afterLsn) {
+                    action.accept(Subscriber.parseFrom(payload));
+                    applied++;
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Kuyruktaki kayıtları yazar ve log'u kapatır
+     */
+    @Override
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            running = false;
+        }
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("WAL kapatılamadı: {}", e.getMessage());
+        }
+    }
+
+    List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    // Son segmenti tarar, yarım kalan kaydı keser ve sonuna eklemek için açar
+    private void openForAppend() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        nextLsn = 1;
+        if (segments.isEmpty()) {
+            openSegment(nextLsn);
+            return;
+        }
+
+        Path last = segments.get(segments.size() - 1);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(last));
+        nextLsn = firstLsn(last);
+        long[] lsn = new long[1];
+        while (readRecord(data, lsn) != null) {
+            nextLsn = lsn[0] + 1;
+        }
+        durableLsn = nextLsn - 1;
+
+        channel = FileChannel.open(last, StandardOpenOption.WRITE);
+        channel.truncate(data.position());
+        channel.position(data.position());
+        segmentBytes = data.position();
+        // Eski segment bir snapshot'a dahil edildiğinde silinebilsin
+        rollRequested = true;
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentBytes = 0;
+    }
+
+    static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Geçerli bir kayıt varsa yükünü döndürür ve konumu ilerletir; yoksa null
+    private static byte[] readRecord(ByteBuffer data, long[] lsn) {
+        if (data.remaining() < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        int start = data.position();
+        int length = data.getInt();
+        long recordLsn = data.getLong();
+        int crc = data.getInt();
+        if (length < 0 || data.remaining() < length) {
+            data.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        data.get(payload);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        if ((int) checksum.getValue() != crc) {
+            data.position(start);
+            return null;
+        }
+        lsn[0] = recordLsn;
+        return payload;
+    }
+
+    private void writeLoop() {
+        List<Entry> group = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        while (true) {
+            Entry first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                if (!running && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            // fsync sürerken biriken tüm kayıtları tek grupta yaz
+            group.clear();
+            group.add(first);
+            queue.drainTo(group, MAX_GROUP_SIZE - 1);
+            if (failure != null) {
+                failGroup(group, new IOException("WAL yazılamıyor", failure));
+                continue;
+            }
+            buffer = encode(group, buffer);
+            int groupBytes = buffer.remaining();
+            long groupStart = -1;
+            try {
+                if (segmentBytes > 0 && (rollRequested || segmentBytes + groupBytes > SEGMENT_SIZE)) {
+                    rollRequested = false;
+                    openSegment(first.lsn);
+                }
+                groupStart = segmentBytes;
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                segmentBytes += groupBytes;
+                durableLsn = group.get(group.size() - 1).lsn;
+                for (Entry entry : group) {
+                    entry.future.complete(entry.lsn);
+                }
+            } catch (IOException e) {
+                failGroup(group, e);
+                discardTornGroup(groupStart, e);
+            }
+        }
+    }
+
+    private static void failGroup(List<Entry> group, IOException e) {
+        for (Entry entry : group) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    // Yarım yazılan grubu segmentten keser; kesilemezse log'u hatalı işaretler
+    private void discardTornGroup(long groupStart, IOException cause) {
+        log.error("WAL grubu yazılamadı: {}", cause.getMessage());
+        if (groupStart >= 0) {
+            try {
+                channel.truncate(groupStart);
+                channel.position(groupStart);
+                channel.force(false);
+                return;
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        synchronized (this) {
+            failure = cause;
+        }
+        log.error("WAL segmenti onarılamadı, yeni kayıtlar reddedilecek: {}", cause.getMessage());
+        List<Entry> queued = new ArrayList<>();
+        queue.drainTo(queued);
+        failGroup(queued, new IOException("WAL yazılamıyor", cause));
+    }
+
+    private static ByteBuffer encode(List<Entry> group, ByteBuffer buffer) {
+        int size = 0;
+        for (Entry entry : group) {
+            size += RECORD_HEADER_SIZE + entry.payload.length;
+        }
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        buffer.clear();
+        CRC32 checksum = new CRC32();
+        for (Entry entry : group) {
+            checksum.reset();
+            checksum.update(entry.payload);
+            buffer.putInt(entry.payload.length)
+                .putLong(entry.lsn)
+                .putInt((int) checksum.getValue())
+                .put(entry.payload);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static final class Entry {
+        final long lsn;
+        final byte[] payload;
+        final CompletableFuture<Long> future;
+
+        Entry(long lsn, byte[] payload, CompletableFuture<Long> future) {
+            this.lsn = lsn;
+            this.payload = payload;
+            this.future = future;
+        }
+    }
+}
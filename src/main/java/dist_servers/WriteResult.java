@@ -0,0 +1,17 @@
+package dist_servers;
+
+/**
+ * Bir abone yazmasının client'a bildirilen sonucu
+ */
+public enum WriteResult {
+    /** Değişiklik uygulandı ve yazma modunun istediği şekilde kalıcı */
+    APPLIED,
+    /** Değişiklik uygulanmadı (örn. ID zaten var, abone yok) */
+    REJECTED,
+    /**
+     * Değişiklik yerel depoda görünür ve peer kuyruklarında, ancak log'a
+     * yazılamadı ya da quorum onayı alınamadı. Geri alınmaz; replikatörler
+     * ve anti-entropy yaymaya devam eder, bu yüzden sonuç belirsizdir.
+     */
+    UNCONFIRMED
+}
@@ -0,0 +1,164 @@
+package Clients;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import dist_servers.ClientHandler;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * İsteklerin boru hattına alınması ve yanıtların sırayla eşleştirilmesi.
+ * Sunucu yerine çerçeveleri sırasıyla geri yollayan sahte bir sunucu kullanılır.
+ */
+public class ClientTest {
+    private static ServerSocket listener;
+
+    private volatile Socket accepted;
+    private volatile boolean echo;
+    private CountDownLatch received;
+    private Thread server;
+    private Client client;
+
+    @BeforeClass
+    public static void startListener() throws IOException {
+        listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        // Client küme üyeliğini sınıf yüklenirken okur
+        System.setProperty("cluster.members", "1@127.0.0.1:1:" + listener.getLocalPort() + ":1");
+    }
+
+    @AfterClass
+    public static void stopListener() throws IOException {
+        System.clearProperty("cluster.members");
+        listener.close();
+    }
+
+    @Before
+    public void setUp() {
+        echo = true;
+        received = new CountDownLatch(3);
+        server = new Thread(this::serve, "ClientTest-server");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        if (accepted != null) {
+            accepted.close();
+        }
+        server.join(10_000);
+    }
+
+    @Test
+    public void pipelinedResponsesMatchRequestOrder() throws Exception {
+        client = new Client("test", 4);
+        assertTrue(client.connect(1));
+
+        List<Subscriber> requests = new ArrayList<>();
+        for (int id = 1; id <= 5000; id++) {
+            requests.add(subscriber(id));
+        }
+        List<CompletableFuture<Subscriber>> futures = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i += 100) {
+            futures.addAll(client.subscribeAll(requests.subList(i, i + 100)));
+        }
+        for (int i = 0; i < requests.size(); i += 7) {
+            futures.add(client.subscribeAsync(requests.get(i)));
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(requests.get(i), futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        for (int i = 5000, j = 0; i < futures.size(); i++, j += 7) {
+            assertEquals(requests.get(j), futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+
+        List<Subscriber> batch = client.subscribeBatch(requests.subList(0, 50)).get(10, TimeUnit.SECONDS);
+        assertEquals(requests.subList(0, 50), batch);
+        assertEquals(subscriber(9), client.subscribe(subscriber(9)));
+    }
+
+    @Test
+    public void pendingRequestsFailWhenConnectionCloses() throws Exception {
+        echo = false;
+        client = new Client("test", 16);
+        assertTrue(client.connect(1));
+        List<CompletableFuture<Subscriber>> futures = new ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            futures.add(client.subscribeAsync(subscriber(id)));
+        }
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        accepted.close();
+
+        for (CompletableFuture<Subscriber> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Bağlantı kapandığı halde yanıt alındı");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof IOException);
+            }
+        }
+        // Okuyucu kapandıktan sonra yeni istekler kuyrukta takılı kalmaz
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (client.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(client.isConnected());
+        assertNull(client.subscribe(subscriber(4)));
+    }
+
+    // Çerçeveleri geldiği sırayla aynen geri yollar; echo kapalıysa yalnızca okur
+    private void serve() {
+        try (Socket socket = listener.accept()) {
+            accepted = socket;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                int header = in.readInt();
+                byte[] payload = new byte[header & ~ClientHandler.BATCH_FRAME];
+                in.readFully(payload);
+                received.countDown();
+                if (echo) {
+                    out.writeInt(header);
+                    out.write(payload);
+                    if (in.available() == 0) {
+                        out.flush();
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // Bağlantı kapandı
+        }
+    }
+
+    private static Subscriber subscriber(int id) {
+        return Subscriber.newBuilder()
+            .setId(id)
+            .setStatus(Status.SUBS)
+            .setNameSurname("Abone " + id)
+            .build();
+    }
+}
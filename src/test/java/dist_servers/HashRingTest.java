@@ -0,0 +1,82 @@
+package dist_servers;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tutarlı hash halkasının sahiplik kuralları
+ */
+public class HashRingTest {
+    private static final int PARTITION_SIZE = 1000;
+    private static final int PARTITIONS = 10_000;
+
+    @Test
+    public void ownersAreDistinctAndPrimaryFirst() {
+        HashRing ring = new HashRing(Arrays.asList(1, 2, 3, 4, 5), PARTITION_SIZE, 64);
+        for (long partition = 0; partition < PARTITIONS; partition++) {
+            int[] owners = ring.ownersOfPartition(partition, 3);
+            assertEquals(3, owners.length);
+            assertEquals(ring.primaryOfPartition(partition), owners[0]);
+            assertEquals(3, Arrays.stream(owners).distinct().count());
+        }
+    }
+
+    @Test
+    public void replicasAreLimitedByNodeCount() {
+        HashRing ring = new HashRing(Arrays.asList(1, 2), PARTITION_SIZE, 16);
+        assertEquals(2, ring.ownersOf(12345, 5).length);
+        assertEquals(1, ring.ownersOf(12345, 0).length);
+    }
+
+    @Test
+    public void idsOfOnePartitionShareOwners() {
+        HashRing ring = new HashRing(Arrays.asList(1, 2, 3), PARTITION_SIZE, 32);
+        assertEquals(7, ring.partitionOf(7999));
+        assertEquals(8, ring.partitionOf(8000));
+        assertArrayEquals(ring.ownersOf(7000, 2), ring.ownersOf(7999, 2));
+        assertTrue(ring.isOwner(ring.primaryOf(7500), 7500, 1));
+    }
+
+    @Test
+    public void ringIsDeterministicAndOrderIndependent() {
+        HashRing a = new HashRing(Arrays.asList(1, 2, 3), PARTITION_SIZE, 32);
+        HashRing b = new HashRing(Arrays.asList(3, 1, 2), PARTITION_SIZE, 32);
+        for (long partition = 0; partition < PARTITIONS; partition++) {
+            assertArrayEquals(a.ownersOfPartition(partition, 2), b.ownersOfPartition(partition, 2));
+        }
+    }
+
+    @Test
+    public void addingNodeMovesOnlyItsShare() {
+        List<Integer> before = Arrays.asList(1, 2, 3);
+        HashRing three = new HashRing(before, PARTITION_SIZE, 128);
+        HashRing four = new HashRing(Arrays.asList(1, 2, 3, 4), PARTITION_SIZE, 128);
+        int moved = 0;
+        int[] load = new int[5];
+        for (long partition = 0; partition < PARTITIONS; partition++) {
+            int oldPrimary = three.primaryOfPartition(partition);
+            int newPrimary = four.primaryOfPartition(partition);
+            load[newPrimary]++;
+            if (oldPrimary != newPrimary) {
+                moved++;
+                // Bölümler yalnızca yeni düğüme taşınır
+                assertEquals(4, newPrimary);
+            }
+        }
+        // Beklenen pay 1/4; sanal düğümler dağılımı dengeler
+        assertTrue("taşınan " + moved, moved > PARTITIONS / 8 && moved < PARTITIONS * 3 / 8);
+        for (int node = 1; node <= 4; node++) {
+            assertTrue("düğüm " + node + " yükü " + load[node], load[node] > PARTITIONS / 8);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyRingIsRejected() {
+        new HashRing(Collections.emptyList(), PARTITION_SIZE, 16);
+    }
+}
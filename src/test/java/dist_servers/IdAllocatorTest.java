@@ -0,0 +1,97 @@
+package dist_servers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Blok kiralamalı ID dağıtımı
+ */
+public class IdAllocatorTest {
+    private static final int BLOCK_SIZE = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final HashRing ring = new HashRing(Arrays.asList(1, 2, 3), BLOCK_SIZE, 16);
+
+    @Before
+    public void setUp() {
+        System.setProperty(ServerPaths.DATA_DIR_PROPERTY, folder.getRoot().getPath());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ServerPaths.DATA_DIR_PROPERTY);
+    }
+
+    @Test
+    public void idsAreUniqueAcrossNodesAndThreads() throws InterruptedException {
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        for (int node = 1; node <= 3; node++) {
+            IdAllocator allocator = new IdAllocator(node, ring);
+            Set<Integer> issued = ConcurrentHashMap.newKeySet();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                pool.execute(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        issued.add(allocator.next());
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+            assertEquals(4 * 500, issued.size());
+            for (int id : issued) {
+                assertTrue(id > 0);
+                assertEquals(node, ring.primaryOf(id));
+            }
+            ids.addAll(issued);
+        }
+        assertEquals(3 * 4 * 500, ids.size());
+    }
+
+    @Test
+    public void firstBlockSkipsZero() {
+        // Bölüm 0'ın sahibi ilk bloğu 1'den başlatır
+        int owner = ring.primaryOfPartition(0);
+        assertEquals(1, new IdAllocator(owner, ring).next());
+    }
+
+    @Test
+    public void restartDoesNotReuseLeasedBlocks() {
+        IdAllocator first = new IdAllocator(1, ring);
+        Set<Integer> issued = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            issued.add(first.next());
+        }
+        int max = issued.stream().max(Integer::compare).get();
+
+        IdAllocator restarted = new IdAllocator(1, ring);
+        int next = restarted.next();
+        assertFalse(issued.contains(next));
+        assertTrue(next > max);
+        assertEquals(1, ring.primaryOf(next));
+    }
+
+    @Test
+    public void reserveUpToSkipsRecoveredIds() {
+        IdAllocator allocator = new IdAllocator(3, ring);
+        allocator.reserveUpTo(50_000);
+        int next = allocator.next();
+        assertTrue(ring.partitionOf(next) > ring.partitionOf(50_000));
+        assertEquals(3, ring.primaryOf(next));
+    }
+}
@@ -0,0 +1,115 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static dist_servers.SubscriberStoreTest.subscriber;
+import static org.junit.Assert.*;
+
+/**
+ * Kalıcı mmap deposunun yeniden açılış ve çökme sonrası onarımı
+ */
+public class MappedSubscriberStoreTest {
+    // MappedSubscriberStore dosya düzeni
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 32;
+    private static final int NAME_OFFSET = 24;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopenKeepsRecords() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        MappedSubscriberStore store = new MappedSubscriberStore(dir);
+        for (int id = 1; id <= 1000; id++) {
+            store.put(subscriber(id, Status.SUBS, "Abone " + id));
+        }
+        store.put(subscriber(10, Status.OFFL, "Yeni isim"));
+        store.force();
+
+        MappedSubscriberStore reopened = new MappedSubscriberStore(dir);
+        assertEquals(1000, reopened.size());
+        assertEquals(subscriber(10, Status.OFFL, "Yeni isim"), reopened.get(10));
+        assertEquals(subscriber(999, Status.SUBS, "Abone 999"), reopened.get(999));
+    }
+
+    @Test
+    public void reopenRebuildsCountAndBrokenNames() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        MappedSubscriberStore store = new MappedSubscriberStore(dir);
+        for (int id = 1; id <= 100; id++) {
+            store.put(subscriber(id, Status.SUBS, "Abone " + id));
+        }
+        store.force();
+
+        // Çökme: başlıktaki sayaç eski kalmış, bir kaydın isim konumu dosya dışını gösteriyor
+        try (FileChannel index = FileChannel.open(dir.resolve("subscribers.idx"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            write(index, COUNT_OFFSET, ByteBuffer.allocate(4).putInt(0, 3));
+            int capacity = read(index, CAPACITY_OFFSET, 4).getInt(0);
+            long broken = -1;
+            for (int slot = 0; slot < capacity && broken < 0; slot++) {
+                long record = HEADER_SIZE + (long) slot * RECORD_SIZE;
+                if (read(index, record, 4).getInt(0) == 42) {
+                    broken = record;
+                }
+            }
+            assertTrue(broken >= 0);
+            write(index, broken + NAME_OFFSET, ByteBuffer.allocate(8).putLong(0, Long.MAX_VALUE / 2));
+        }
+
+        MappedSubscriberStore reopened = new MappedSubscriberStore(dir);
+        assertEquals(100, reopened.size());
+        assertEquals("", reopened.get(42).getNameSurname());
+        assertEquals(Status.SUBS, reopened.get(42).getStatus());
+        assertEquals("Abone 41", reopened.get(41).getNameSurname());
+
+        // Onarılan kayıt güncellenebilir, yeni isimler eskilerin üzerine yazılmaz
+        reopened.put(subscriber(42, Status.ONLN, "Onarıldı"));
+        reopened.put(subscriber(101, Status.SUBS, "Yeni"));
+        assertEquals("Onarıldı", reopened.get(42).getNameSurname());
+        assertEquals("Abone 100", reopened.get(100).getNameSurname());
+    }
+
+    @Test
+    public void invalidCapacityIsRejected() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        new MappedSubscriberStore(dir).force();
+        try (FileChannel index = FileChannel.open(dir.resolve("subscribers.idx"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            write(index, CAPACITY_OFFSET, ByteBuffer.allocate(4).putInt(0, 1 << 30));
+        }
+        try {
+            new MappedSubscriberStore(dir);
+            fail("Geçersiz kapasite kabul edildi");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause().getMessage().contains("kapasite"));
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
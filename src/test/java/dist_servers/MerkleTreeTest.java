@@ -0,0 +1,87 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static dist_servers.SubscriberStoreTest.subscriber;
+import static org.junit.Assert.*;
+
+/**
+ * Anti-entropy özet ağacının farkları bölüm ve aralığa kadar daraltması
+ */
+public class MerkleTreeTest {
+    private static final int PARTITION_SIZE = 1600;
+
+    private final HashRing ring = new HashRing(Arrays.asList(1, 2, 3), PARTITION_SIZE, 16);
+
+    @Test
+    public void sameContentGivesSameRootRegardlessOfOrder() {
+        SubscriberStore a = new MapSubscriberStore();
+        SubscriberStore b = new IntSubscriberStore();
+        for (int id = 1; id <= 10_000; id++) {
+            a.put(subscriber(id, Status.SUBS, "Abone " + id));
+        }
+        for (int id = 10_000; id >= 1; id--) {
+            b.put(subscriber(id, Status.SUBS, "Abone " + id));
+        }
+        MerkleTree left = MerkleTree.build(a, ring);
+        MerkleTree right = MerkleTree.build(b, ring);
+        assertEquals(left.root(partition -> true), right.root(partition -> true));
+        assertEquals(left.partitionHashes(partition -> true), right.partitionHashes(partition -> true));
+    }
+
+    @Test
+    public void differenceIsNarrowedToOneRange() {
+        SubscriberStore a = new MapSubscriberStore();
+        SubscriberStore b = new MapSubscriberStore();
+        for (int id = 1; id <= 10_000; id++) {
+            a.put(subscriber(id, Status.SUBS, "Abone " + id));
+            b.put(subscriber(id, Status.SUBS, "Abone " + id));
+        }
+        int changed = 4321;
+        b.put(subscriber(changed, Status.OFFL, "Abone " + changed));
+
+        MerkleTree left = MerkleTree.build(a, ring);
+        MerkleTree right = MerkleTree.build(b, ring);
+        assertNotEquals(left.root(partition -> true), right.root(partition -> true));
+
+        // Farklı bölümü dışarıda bırakan kökler eşittir
+        long partition = ring.partitionOf(changed);
+        assertEquals(left.root(p -> p != partition), right.root(p -> p != partition));
+
+        Map<Long, Long> leftPartitions = left.partitionHashes(p -> true);
+        Map<Long, Long> rightPartitions = right.partitionHashes(p -> true);
+        for (Long p : leftPartitions.keySet()) {
+            assertEquals(p == partition, !leftPartitions.get(p).equals(rightPartitions.get(p)));
+        }
+
+        long[] leftRanges = left.rangeHashes(partition);
+        long[] rightRanges = right.rangeHashes(partition);
+        int range = left.rangeOf(changed);
+        for (int r = 0; r < MerkleTree.RANGES_PER_PARTITION; r++) {
+            assertEquals(r == range, leftRanges[r] != rightRanges[r]);
+        }
+        assertTrue(left.rangeStart(partition, range) <= changed);
+        assertTrue(changed < left.rangeEnd(partition, range));
+    }
+
+    @Test
+    public void missingRecordIsDetected() {
+        SubscriberStore a = new MapSubscriberStore();
+        SubscriberStore b = new MapSubscriberStore();
+        for (int id = 1; id <= 100; id++) {
+            a.put(subscriber(id, Status.SUBS, ""));
+            if (id != 77) {
+                b.put(subscriber(id, Status.SUBS, ""));
+            }
+        }
+        MerkleTree left = MerkleTree.build(a, ring);
+        MerkleTree right = MerkleTree.build(b, ring);
+        int range = left.rangeOf(77);
+        assertNotEquals(left.rangeHashes(0)[range], right.rangeHashes(0)[range]);
+        assertArrayEquals(new long[MerkleTree.RANGES_PER_PARTITION], right.rangeHashes(99));
+    }
+}
@@ -0,0 +1,155 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberBatchProto.SubscriberBatch;
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+
+import static dist_servers.SubscriberStoreTest.subscriber;
+import static org.junit.Assert.*;
+
+/**
+ * Peer el sıkışması, çerçeveleme ve sıkıştırma
+ */
+public class PeerCodecTest {
+    private ServerSocket listener;
+    private PeerCodec client;
+    private PeerCodec server;
+
+    @Before
+    public void setUp() throws IOException {
+        listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        System.clearProperty("peer.compression");
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        listener.close();
+    }
+
+    @Test
+    public void handshakeExchangesIdsAndFeatures() throws IOException {
+        connect(1, 2);
+        assertEquals(2, client.getPeerId());
+        assertEquals(1, server.getPeerId());
+        assertEquals(PeerCodec.VERSION, client.getVersion());
+        assertTrue(client.supports(PeerCodec.FEATURE_BATCHING));
+        assertFalse(client.supports(PeerCodec.FEATURE_COMPRESSION));
+    }
+
+    @Test
+    public void framesArriveInOrder() throws IOException {
+        connect(1, 2);
+        Subscriber small = subscriber(1, Status.SUBS, "Ali");
+        SubscriberBatch large = batch(1000);
+        client.write(PeerCodec.TYPE_HEARTBEAT, small);
+        client.writeCompressed(PeerCodec.TYPE_TRANSFER_CHUNK, large);
+        client.write(PeerCodec.TYPE_REPLICATION_BATCH, large);
+        client.flush();
+
+        PeerCodec.Frame peeked = server.peek();
+        assertSame(peeked, server.peek());
+        assertSame(peeked, server.read());
+        assertEquals(PeerCodec.TYPE_HEARTBEAT, peeked.type);
+        assertEquals(small, Subscriber.parseFrom(peeked.payload));
+
+        PeerCodec.Frame compressed = server.read();
+        assertEquals(PeerCodec.TYPE_TRANSFER_CHUNK, compressed.type);
+        assertEquals(large, SubscriberBatch.parseFrom(compressed.payload));
+
+        PeerCodec.Frame plain = server.read();
+        assertEquals(PeerCodec.TYPE_REPLICATION_BATCH, plain.type);
+        assertEquals(large, SubscriberBatch.parseFrom(plain.payload));
+
+        client.close();
+        assertNull(server.read());
+    }
+
+    @Test
+    public void negotiatedCompressionRoundTrips() throws IOException {
+        System.setProperty("peer.compression", "true");
+        connect(1, 2);
+        assertTrue(client.supports(PeerCodec.FEATURE_COMPRESSION));
+        SubscriberBatch large = batch(5000);
+        for (int i = 0; i < 3; i++) {
+            client.write(PeerCodec.TYPE_REPLICATION_BATCH, large);
+        }
+        client.flush();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(large, SubscriberBatch.parseFrom(server.read().payload));
+        }
+    }
+
+    @Test
+    public void closedCodecRejectsCompression() throws IOException {
+        connect(1, 2);
+        client.close();
+        client.close();
+        try {
+            client.writeCompressed(PeerCodec.TYPE_TRANSFER_CHUNK, batch(100));
+            fail("Kapalı codec ile sıkıştırma yapıldı");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void silentPeerTimesOutHandshake() throws IOException {
+        try (Socket silent = new Socket(listener.getInetAddress(), listener.getLocalPort());
+             Socket accepted = listener.accept()) {
+            long start = System.nanoTime();
+            try {
+                PeerCodec.accept(accepted, 2);
+                fail("Boş bağlantı el sıkışmayı geçti");
+            } catch (SocketTimeoutException expected) {
+            }
+            assertTrue(System.nanoTime() - start < 30_000_000_000L);
+            assertEquals(0, accepted.getSoTimeout());
+            assertTrue(silent.isConnected());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void badMagicIsRejected() throws IOException {
+        try (Socket peer = new Socket(listener.getInetAddress(), listener.getLocalPort());
+             Socket accepted = listener.accept()) {
+            peer.getOutputStream().write(new byte[14]);
+            PeerCodec.accept(accepted, 2);
+        }
+    }
+
+    private void connect(int clientId, int serverId) throws IOException {
+        CompletableFuture<PeerCodec> accepted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return PeerCodec.accept(listener.accept(), serverId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        client = PeerCodec.connect(new Socket(listener.getInetAddress(), listener.getLocalPort()), clientId);
+        server = accepted.join();
+    }
+
+    private static SubscriberBatch batch(int size) {
+        SubscriberBatch.Builder batch = SubscriberBatch.newBuilder();
+        for (int id = 1; id <= size; id++) {
+            batch.addSubscribers(subscriber(id, Status.ONLN, "Abone " + id));
+        }
+        return batch.build();
+    }
+}
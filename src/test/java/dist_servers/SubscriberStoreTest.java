@@ -0,0 +1,144 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tüm SubscriberStore uygulamalarının ortak sözleşmesi
+ */
+@RunWith(Parameterized.class)
+public class SubscriberStoreTest {
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> stores() {
+        return Arrays.asList(new Object[][] {{"map"}, {"int"}, {"mmap"}});
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String kind;
+    private SubscriberStore store;
+
+    public SubscriberStoreTest(String kind) {
+        this.kind = kind;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        switch (kind) {
+            case "int":
+                store = new IntSubscriberStore();
+                break;
+            case "mmap":
+                store = new MappedSubscriberStore(folder.newFolder().toPath());
+                break;
+            default:
+                store = new MapSubscriberStore();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        store.clear();
+    }
+
+    static Subscriber subscriber(int id, Status status, String name) {
+        return Subscriber.newBuilder()
+            .setId(id)
+            .setStatus(status)
+            .setNameSurname(name)
+            .setStartDate(1000L + id)
+            .setLastAccessed(2000L + id)
+            .build();
+    }
+
+    @Test
+    public void putReturnsPreviousStatus() {
+        assertNull(store.put(subscriber(7, Status.SUBS, "Ali Veli")));
+        assertEquals(Status.SUBS, store.put(subscriber(7, Status.ONLN, "Ali Veli")));
+        assertEquals(Status.ONLN, store.put(subscriber(7, Status.OFFL, "Ali Veli")));
+        assertEquals(subscriber(7, Status.OFFL, "Ali Veli"), store.get(7));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void putReplacesChangedName() {
+        store.put(subscriber(3, Status.SUBS, "Ayşe Yılmaz"));
+        store.put(subscriber(3, Status.SUBS, "Ayşe Kaya"));
+        assertEquals("Ayşe Kaya", store.get(3).getNameSurname());
+    }
+
+    @Test
+    public void putIfAbsentKeepsExistingRecord() {
+        assertTrue(store.putIfAbsent(subscriber(5, Status.SUBS, "İlk")));
+        assertFalse(store.putIfAbsent(subscriber(5, Status.DEL, "İkinci")));
+        assertEquals(subscriber(5, Status.SUBS, "İlk"), store.get(5));
+        assertTrue(store.containsKey(5));
+        assertFalse(store.containsKey(6));
+        assertNull(store.get(6));
+    }
+
+    @Test
+    public void forEachVisitsEveryRecordAcrossResizes() {
+        Map<Integer, Subscriber> expected = new HashMap<>();
+        for (int id = 1; id <= 100_000; id++) {
+            Subscriber subscriber = subscriber(id, Status.forNumber(1 + id % 4), "Abone " + id);
+            expected.put(id, subscriber);
+            store.put(subscriber);
+        }
+        assertEquals(expected.size(), store.size());
+
+        Map<Integer, Subscriber> seen = new HashMap<>();
+        store.forEach(subscriber -> assertNull(seen.put(subscriber.getId(), subscriber)));
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    public void clearRemovesAllRecords() {
+        for (int id = 1; id <= 10; id++) {
+            store.put(subscriber(id, Status.SUBS, ""));
+        }
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.get(1));
+        assertNull(store.put(subscriber(1, Status.SUBS, "")));
+    }
+
+    @Test
+    public void countingStoreTracksStatusTransitions() {
+        store.put(subscriber(1, Status.SUBS, "a"));
+        CountingSubscriberStore counting = new CountingSubscriberStore(store);
+        assertEquals(1, counting.countByStatus(Status.SUBS));
+
+        counting.put(subscriber(2, Status.SUBS, "b"));
+        counting.put(subscriber(1, Status.ONLN, "a"));
+        counting.put(subscriber(2, Status.ONLN, "b"));
+        counting.put(subscriber(2, Status.ONLN, "b"));
+        assertFalse(counting.putIfAbsent(subscriber(1, Status.DEL, "a")));
+        assertTrue(counting.putIfAbsent(subscriber(3, Status.OFFL, "c")));
+
+        assertEquals(0, counting.countByStatus(Status.SUBS));
+        assertEquals(2, counting.countByStatus(Status.ONLN));
+        assertEquals(1, counting.countByStatus(Status.OFFL));
+        assertEquals(0, counting.countByStatus(Status.DEL));
+        assertEquals(3, counting.size());
+
+        counting.clear();
+        assertEquals(0, counting.countByStatus(Status.ONLN));
+    }
+}
@@ -0,0 +1,152 @@
+package dist_servers;
+
+import com.hasup.proto.SubscriberProto.Status;
+import com.hasup.proto.SubscriberProto.Subscriber;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static dist_servers.SubscriberStoreTest.subscriber;
+import static org.junit.Assert.*;
+
+/**
+ * WAL yazma, yeniden oynatma ve yarım kalan kuyruğun kesilmesi
+ */
+public class WriteAheadLogTest {
+    private static final int SERVER_ID = 1;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private WriteAheadLog wal;
+
+    @Before
+    public void setUp() {
+        System.setProperty(ServerPaths.DATA_DIR_PROPERTY, folder.getRoot().getPath());
+        wal = WriteAheadLog.open(SERVER_ID);
+    }
+
+    @After
+    public void tearDown() {
+        wal.close();
+        System.clearProperty(ServerPaths.DATA_DIR_PROPERTY);
+    }
+
+    @Test
+    public void appendAssignsLsnsAndReplaysInOrder() throws IOException {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int id = 1; id <= 500; id++) {
+            futures.add(wal.append(subscriber(id, Status.SUBS, "Abone " + id)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i + 1, futures.get(i).join().longValue());
+        }
+        assertEquals(500, wal.getDurableLsn());
+
+        wal.close();
+        wal = WriteAheadLog.open(SERVER_ID);
+        assertEquals(500, wal.getLastAssignedLsn());
+        assertEquals(200, replay(wal, 300).size());
+        List<Subscriber> all = replay(wal, 0);
+        assertEquals(500, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i + 1, all.get(i).getId());
+        }
+    }
+
+    @Test
+    public void tornTailIsTruncatedOnOpen() throws IOException {
+        for (int id = 1; id <= 3; id++) {
+            assertTrue(wal.await(wal.append(subscriber(id, Status.SUBS, "Abone " + id))));
+        }
+        wal.close();
+
+        // Son kaydın ortasında kesilmiş bir yazma: başlık tam, yük eksik
+        Path segment = lastSegment();
+        long intact = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer torn = ByteBuffer.allocate(20).putInt(100).putLong(4).putInt(0x12345678).putInt(7);
+            torn.flip();
+            channel.write(torn);
+        }
+
+        wal = WriteAheadLog.open(SERVER_ID);
+        assertEquals(intact, Files.size(lastSegment()));
+        assertEquals(3, wal.getLastAssignedLsn());
+        assertEquals(4, wal.append(subscriber(4, Status.ONLN, "Dört")).join().longValue());
+        wal.close();
+
+        wal = WriteAheadLog.open(SERVER_ID);
+        List<Subscriber> replayed = replay(wal, 0);
+        assertEquals(4, replayed.size());
+        assertEquals(subscriber(4, Status.ONLN, "Dört"), replayed.get(3));
+    }
+
+    @Test
+    public void corruptChecksumEndsTheLog() throws IOException {
+        for (int id = 1; id <= 3; id++) {
+            wal.append(subscriber(id, Status.SUBS, "Abone " + id)).join();
+        }
+        wal.close();
+
+        // Son kaydın yükündeki bir bayt bozulur; CRC tutmadığı için kayıt atılır
+        Path segment = lastSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long last = channel.size() - 1;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, last);
+            b.flip();
+            b.put(0, (byte) (b.get(0) ^ 0xff));
+            channel.write(b, last);
+        }
+
+        wal = WriteAheadLog.open(SERVER_ID);
+        assertEquals(2, wal.getLastAssignedLsn());
+        assertEquals(2, replay(wal, 0).size());
+    }
+
+    @Test
+    public void coveredSegmentsAreDeleted() throws IOException {
+        for (int id = 1; id <= 10; id++) {
+            wal.append(subscriber(id, Status.SUBS, "")).join();
+        }
+        wal.roll();
+        for (int id = 11; id <= 20; id++) {
+            wal.append(subscriber(id, Status.SUBS, "")).join();
+        }
+        assertEquals(2, wal.segments().size());
+
+        wal.deleteSegmentsUpTo(5);
+        assertEquals(2, wal.segments().size());
+        assertTrue(wal.covers(0));
+
+        wal.deleteSegmentsUpTo(10);
+        assertEquals(1, wal.segments().size());
+        assertTrue(wal.covers(10));
+        assertFalse(wal.covers(5));
+        assertEquals(10, replay(wal, 0).size());
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = wal.segments();
+        return segments.get(segments.size() - 1);
+    }
+
+    private static List<Subscriber> replay(WriteAheadLog wal, long afterLsn) throws IOException {
+        List<Subscriber> replayed = new ArrayList<>();
+        wal.replay(afterLsn, replayed::add);
+        return replayed;
+    }
+}